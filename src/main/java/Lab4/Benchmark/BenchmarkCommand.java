@@ -1,8 +1,13 @@
 package Lab4.Benchmark;
 
+import Lab4.graph.BFSTree;
 import Lab4.graph.Graph;
+import Lab4.graph.GraphMetrics;
 import Lab4.graph.Helpers;
 import Lab4.graph.Node;
+import Lab4.graph.OffHeapGraph;
+import Lab4.graph.partition.GraphPartition;
+import Lab4.graph.partition.ShardedSearch;
 import com.google.common.base.Joiner;
 import com.google.common.io.Files;
 import picocli.CommandLine;
@@ -13,6 +18,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
 import java.util.stream.LongStream;
 
 /**
@@ -28,11 +34,26 @@ enum SortMode {
      */
     DESCENDING,
     /**
-     * Sort the adjacency lists in random order.
+     * Visit the adjacency lists in random order, chosen anew for every
+     * search without modifying the graph.
      */
     RANDOM
 }
 
+/**
+ * Methods to assign nodes to shards for sharded search.
+ */
+enum PartitionMode {
+    /**
+     * Assign nodes by hashing their names.
+     */
+    HASH,
+    /**
+     * Assign nodes using the linear deterministic greedy edge-cut heuristic.
+     */
+    GREEDY
+}
+
 @CommandLine.Command(description = "Benchmark the performance of BFS.",
                      name = "bfsBench", mixinStandardHelpOptions = true,
                      version = "0")
@@ -74,6 +95,39 @@ public class BenchmarkCommand implements Callable<Integer> {
             "Valid values: ${COMPLETION-CANDIDATES}")
     private SortMode sortMode;
 
+    @CommandLine.Option(names = "--off-heap", required = false,
+            description = "Search an off-heap copy of the graph, made " +
+                    "once per draw, instead of the on-heap graph. Also " +
+                    "loads the input graph off-heap directly from file " +
+                    "and checks it against the on-heap graph.")
+    private boolean offHeap;
+
+    @CommandLine.Option(names = "--metrics", required = false,
+            description = "Compute the hop diameter and radius of the " +
+                    "largest connected component of the input graph " +
+                    "before benchmarking.")
+    private boolean metrics;
+
+    @CommandLine.Option(names = "--repair-trees", required = false,
+            description = "Each draw, compare repairing the BFS tree of " +
+                    "the start airport after node removal with " +
+                    "recomputing it.")
+    private boolean repairTrees;
+
+    @CommandLine.Option(names = "--shards", required = false,
+            defaultValue = "0",
+            description = "Number of local worker processes to run a " +
+                    "sharded search of the input graph with, comparing it " +
+                    "against a single process search. Defaults to 0 " +
+                    "(disabled).")
+    private int shards;
+
+    @CommandLine.Option(names = "--partitioner", required = false,
+            defaultValue = "GREEDY", description = "How to assign nodes " +
+            "to shards for sharded search. " +
+            "Valid values: ${COMPLETION-CANDIDATES}")
+    private PartitionMode partitionMode;
+
     @CommandLine.Parameters(index = "0",
             description = "Airports (represented by their codes) to start " +
                     "and end search at",
@@ -96,6 +150,145 @@ public class BenchmarkCommand implements Callable<Integer> {
                 .toArray(String[]::new);
     }
 
+    /**
+     * Time loading the input graph from file directly into native memory,
+     * and check it against the graph loaded on-heap by comparing edge counts
+     * and the predecessors found by searching both.
+     *
+     * @param g graph loaded on-heap from the same file.
+     * @return exit code.
+     */
+    private int benchmarkOffHeapLoad(Graph g) {
+        var start = System.nanoTime();
+        try (var offHeapGraph = new OffHeapGraph(graphSrc.toPath())) {
+            var end = System.nanoTime();
+            System.out.printf("Off-heap: loaded graph from file with %d " +
+                    "nodes and %d edges: %d ns.%n",
+                    offHeapGraph.getNodeCount(), offHeapGraph.getEdgeCount(),
+                    end - start);
+
+            var nodes = offHeapGraph.getNodeCount();
+            var offHeapPred = new int[nodes];
+            var offHeapSource = offHeapGraph.indexOf(airports[0]);
+            var offHeapTarget = offHeapGraph.indexOf(airports[1]);
+            Arrays.fill(offHeapPred, -1);
+            offHeapGraph.breadthFirstSearch(offHeapSource, offHeapTarget,
+                    offHeapPred, new int[nodes]);
+
+            var pred = new HashMap<String, String>();
+            g.breadthFirstSearch(airports[0], airports[1], pred,
+                    new ArrayDeque<>());
+
+            /* both searches visit the same nodes from the same parents */
+            var matches = (offHeapGraph.getEdgeCount() == g.getEdgeCount())
+                    && (IntStream.of(offHeapPred).filter(p -> p != -1)
+                            .count() == pred.size());
+            for (var entry : pred.entrySet()) {
+                matches &= offHeapPred[offHeapGraph.indexOf(entry.getKey())]
+                        == offHeapGraph.indexOf(entry.getValue());
+            }
+
+            if (!matches) {
+                System.err.println("Error: graph loaded off-heap from file " +
+                        "does not match graph loaded on-heap.");
+                return 1;
+            }
+        } catch (IOException e) {
+            System.err.printf("Error: cannot read graph from file: %s%n",
+                    e.getLocalizedMessage());
+            return 1;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Compare the time taken to search a graph sharded across local worker
+     * processes with that taken to search it in this process.
+     *
+     * @param g graph to search.
+     * @return exit code.
+     */
+    private int benchmarkSharded(Graph g) {
+        GraphPartition partition;
+        try {
+            partition = (partitionMode == PartitionMode.HASH)
+                    ? GraphPartition.Hash(graphSrc.toPath(), shards)
+                    : GraphPartition.LinearDeterministicGreedy(
+                            graphSrc.toPath(), shards);
+        } catch (IOException e) {
+            System.err.printf("Error: cannot partition graph from file: " +
+                    "%s%n", e.getLocalizedMessage());
+            return 1;
+        }
+
+        var pred = new HashMap<String, String>();
+        var toVisit = new ArrayDeque<Node<String>>();
+        var shardedTimes = new long[loopsPerDraw];
+        var localTimes = new long[loopsPerDraw];
+        try (var search = new ShardedSearch(partition)) {
+            System.out.printf("Sharded: %d shard(s) using partition mode " +
+                    "%s: %d cut edge(s).%n", shards, partitionMode,
+                    search.getEdgeCut());
+            System.out.printf("Sharded: %d byte(s) exchanged starting " +
+                    "workers.%n", search.getSetupBytes());
+
+            List<String> path = Collections.emptyList();
+            for (int loop = 0; loop < (loopsPerDraw + warmupLoopsPerDraw);
+                 ++loop) {
+                var start = System.nanoTime();
+                path = search.breadthFirstSearch(airports[0], airports[1]);
+                var end = System.nanoTime();
+                var shardedTime = end - start;
+
+                pred.clear();
+                toVisit.clear();
+                start = System.nanoTime();
+                g.breadthFirstSearch(airports[0], airports[1], pred, toVisit);
+                end = System.nanoTime();
+
+                if (loop < warmupLoopsPerDraw)
+                    continue;
+
+                shardedTimes[loop - warmupLoopsPerDraw] = shardedTime;
+                localTimes[loop - warmupLoopsPerDraw] = end - start;
+            }
+
+            var levelBytes = search.getLevelBytes();
+            for (var level = 0; level < levelBytes.size(); ++level)
+                System.out.printf("Sharded: level %d: %d byte(s) " +
+                        "exchanged.%n", level, levelBytes.get(level));
+
+            System.out.printf("Sharded: path found: %s.%n", path.isEmpty()
+                    ? "no path" : Joiner.on(" -> ").join(path));
+
+            /* shortest paths may differ, but not in length */
+            var expectedLength = airports[0].equals(airports[1]) ? 1
+                    : pred.containsKey(airports[1])
+                    ? Helpers.BFSPathExtract(airports[0], airports[1],
+                            pred).size() : 0;
+            if (path.size() != expectedLength) {
+                System.err.println("Error: sharded search path length does " +
+                        "not match single process search.");
+                return 1;
+            }
+        } catch (IOException e) {
+            System.err.printf("Error: sharded search failed: %s%n",
+                    e.getLocalizedMessage());
+            return 1;
+        }
+
+        var shardedAverage = LongStream.of(shardedTimes).average()
+                                .getAsDouble();
+        var localAverage = LongStream.of(localTimes).average().getAsDouble();
+        System.out.printf("Sharded: average search time: %f ns: " +
+                "single process average search time: %f ns: " +
+                "speedup: %f.%n", shardedAverage, localAverage,
+                localAverage / shardedAverage);
+
+        return 0;
+    }
+
     @Override
     public Integer call() {
         if (draws <= 0) {
@@ -114,6 +307,12 @@ public class BenchmarkCommand implements Callable<Integer> {
             return 1;
         }
 
+        if (shards < 0) {
+            System.err.println("Error: number of shards must be " +
+                    "non-negative.");
+            return 1;
+        }
+
         Graph airportGraph;
         var source = Files.asCharSource(graphSrc, StandardCharsets.UTF_8);
 
@@ -141,9 +340,11 @@ public class BenchmarkCommand implements Callable<Integer> {
                 "Using %d draw(s) with %d loop(s) per draw " +
                 "(and %d warmup loops per draw).%nUsing adjacency list " +
                 "sort mode %s.%n%s a path between the" +
-                " destination node and source node every draw.%n",
+                " destination node and source node every draw.%n" +
+                "Using %s graph storage.%n",
                 size, draws, loopsPerDraw, warmupLoopsPerDraw,
-                sortMode, preservePath ? "Ensuring" : "Not ensuring");
+                sortMode, preservePath ? "Ensuring" : "Not ensuring",
+                offHeap ? "off-heap" : "on-heap");
 
         var pred = new HashMap<String, String>();
         var toVisit = new ArrayDeque<Node<String>>();
@@ -170,6 +371,25 @@ public class BenchmarkCommand implements Callable<Integer> {
             return 1;
         }
 
+        if (metrics) {
+            var start = System.nanoTime();
+            var graphMetrics = new GraphMetrics(airportGraph);
+            var diameter = graphMetrics.getDiameter();
+            var radius = graphMetrics.getRadius();
+            var end = System.nanoTime();
+
+            System.out.printf("Metrics: largest component of %d node(s): " +
+                    "diameter %d: radius %d: %d BFS run(s): %d ns.%n",
+                    graphMetrics.getComponentSize(), diameter, radius,
+                    graphMetrics.getBFSRuns(), end - start);
+        }
+
+        if (offHeap && (benchmarkOffHeapLoad(airportGraph) != 0))
+            return 1;
+
+        if ((shards > 0) && (benchmarkSharded(airportGraph) != 0))
+            return 1;
+
         /*
          * In each draw, select the nodes to remove from the graph in order
          * to preserve
@@ -179,10 +399,13 @@ public class BenchmarkCommand implements Callable<Integer> {
         var timePerLoop = new long[loopsPerDraw];
         var edgesPerLoop = new long[loopsPerDraw];
         var rng = new Random();
+        var offHeapPred = new int[size];
+        var offHeapQueue = new int[size];
         for (int draw = 0; draw < draws; ++draw) {
-            var mutatedGraph = airportGraph.remove(
-                    Select(airportGraph.getNames().toArray(new String[0]),
-                            origNodes - size, rng));
+            var removed = Select(
+                    airportGraph.getNames().toArray(new String[0]),
+                    origNodes - size, rng);
+            var mutatedGraph = airportGraph.remove(removed);
             var nodeNames = mutatedGraph.getNames();
             if ((!nodeNames.contains(airports[0]))
                     || (!nodeNames.contains(airports[1]))) {
@@ -210,49 +433,119 @@ public class BenchmarkCommand implements Callable<Integer> {
                 pathExists = false;
             }
 
+            if (repairTrees) {
+                var tree = new BFSTree(airportGraph, airports[0]);
+
+                var start = System.nanoTime();
+                tree.remove(mutatedGraph, removed);
+                var end = System.nanoTime();
+                var repairTime = end - start;
+
+                start = System.nanoTime();
+                var freshTree = new BFSTree(mutatedGraph, airports[0]);
+                end = System.nanoTime();
+                var freshTime = end - start;
+
+                var treePath = tree.getPredecessors().containsKey(
+                        airports[1]) ? Helpers.BFSPathExtract(
+                        airports[0], airports[1], tree.getPredecessors())
+                        : null;
+                var expectedPath = pathExists ? Helpers.BFSPathExtract(
+                        airports[0], airports[1], pred) : null;
+                if ((!tree.getDistances().equals(freshTree.getDistances()))
+                        || (!tree.getPredecessors().equals(
+                                freshTree.getPredecessors()))
+                        || (!Objects.equals(treePath, expectedPath))) {
+                    System.err.printf("Error: repaired BFS tree does not " +
+                            "match a fresh search in draw %d.%n", draw);
+                    return 1;
+                }
+
+                System.out.printf("Draw %d: tree repair (%s): work %d: " +
+                        "%d ns: full recompute: work %d: %d ns.%n", draw,
+                        tree.wasLastUpdateFull() ? "recomputed" : "repaired",
+                        tree.getLastUpdateWork(), repairTime,
+                        freshTree.getLastUpdateWork(), freshTime);
+            }
+
             switch (sortMode) {
                 case ASCENDING:
                     mutatedGraph.rearrange(Helpers::AscendingRearranger);
                     break;
                 case DESCENDING:
                     mutatedGraph.rearrange(Helpers::DescendingRearranger);
+                    break;
                 default:
                     break;
             }
 
-            for (int loop = 0; loop < (loopsPerDraw + warmupLoopsPerDraw);
-                 ++loop) {
-                /*
-                 * Sort the adjacency lists in the required order.
-                 *
-                 * Note that optimizations could be used to avoid ascending /
-                 * descending sort repetitions, but it doesn't really matter.
-                 */
-
-                if (sortMode == SortMode.RANDOM)
-                    mutatedGraph.rearrange(
-                            l -> Helpers.RandomRearranger(l, rng));
-
-                pred.clear();
-                toVisit.clear();
-
-                var start = System.nanoTime();
-                mutatedGraph.breadthFirstSearch(airports[0], airports[1],
-                        pred, toVisit);
-                var end = System.nanoTime();
-                var elapsed = (end - start);
-
-                System.out.printf("Draw %d: loop %d: %d edges: %d ns: " +
-                                "path found: %s.%n", draw, loop, edges,
-                        elapsed, pathExists ? Joiner.on(" -> ").join(
+            /*
+             * The off-heap copy is made after sorting, so that it visits
+             * neighbors in the same order as the on-heap graph.
+             */
+            var offHeapGraph = offHeap ? new OffHeapGraph(mutatedGraph) : null;
+            var offHeapSource = offHeap
+                    ? offHeapGraph.indexOf(airports[0]) : -1;
+            var offHeapTarget = offHeap
+                    ? offHeapGraph.indexOf(airports[1]) : -1;
+            try {
+                for (int loop = 0; loop < (loopsPerDraw + warmupLoopsPerDraw);
+                     ++loop) {
+                    long elapsed;
+                    String path;
+
+                    /*
+                     * Random ordering is applied by the search itself, so
+                     * that the adjacency lists need not be shuffled every
+                     * loop.
+                     */
+                    var loopRng = (sortMode == SortMode.RANDOM) ? rng : null;
+                    if (offHeapGraph == null) {
+                        pred.clear();
+                        toVisit.clear();
+
+                        var start = System.nanoTime();
+                        if (loopRng != null)
+                            mutatedGraph.breadthFirstSearch(airports[0],
+                                    airports[1], pred, toVisit, loopRng);
+                        else
+                            mutatedGraph.breadthFirstSearch(airports[0],
+                                    airports[1], pred, toVisit);
+                        var end = System.nanoTime();
+                        elapsed = (end - start);
+
+                        path = pathExists ? Joiner.on(" -> ").join(
                                 Helpers.BFSPathExtract(airports[0], airports[1],
-                                        pred)) : "no path");
-
-                if (loop < warmupLoopsPerDraw)
-                    continue;
-
-                timePerLoop[loop - warmupLoopsPerDraw] = elapsed;
-                edgesPerLoop[loop - warmupLoopsPerDraw] = edges;
+                                        pred)) : "no path";
+                    } else {
+                        Arrays.fill(offHeapPred, -1);
+
+                        var start = System.nanoTime();
+                        offHeapGraph.breadthFirstSearch(offHeapSource,
+                                offHeapTarget, offHeapPred, offHeapQueue,
+                                loopRng);
+                        var end = System.nanoTime();
+                        elapsed = (end - start);
+
+                        path = pathExists ? Joiner.on(" -> ").join(
+                                Helpers.BFSPathExtract(offHeapGraph,
+                                        offHeapSource, offHeapTarget,
+                                        offHeapPred)) : "no path";
+                    }
+
+                    System.out.printf("Draw %d: loop %d: %d edges: %d ns: " +
+                                    "path found: %s.%n", draw, loop, edges,
+                            elapsed, path);
+
+                    if (loop < warmupLoopsPerDraw)
+                        continue;
+
+                    timePerLoop[loop - warmupLoopsPerDraw] = elapsed;
+                    edgesPerLoop[loop - warmupLoopsPerDraw] = edges;
+                }
+            } finally {
+                if (offHeapGraph != null)
+                    offHeapGraph.close();
             }
 
             timePerDraw[draw] = LongStream.of(timePerLoop)
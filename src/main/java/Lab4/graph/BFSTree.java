@@ -0,0 +1,513 @@
+package Lab4.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Single-source breadth first search tree that can be repaired after nodes
+ * are removed from the graph, instead of being recomputed.
+ *
+ * Removing nodes can only lengthen shortest paths, and only for nodes in
+ * the subtrees rooted at the removed nodes. Upon removal, only those
+ * (affected) nodes are reattached: each is first given the best distance
+ * offered by its unaffected neighbors, and the affected nodes are then
+ * finalized in increasing order of distance, relaxing their affected
+ * neighbors. All other nodes keep their distance.
+ *
+ * A fresh search makes each node a child of the neighbor one level closer
+ * to the source that it dequeues first. Reattached nodes that keep their
+ * distance can only move later in that order relative to unaffected nodes,
+ * and those that move further from the source have no unaffected neighbors
+ * one level further still, so unaffected nodes keep their predecessors.
+ * Reattached nodes then choose theirs level by level, by comparing
+ * positions in the search order, so that predecessors always match those
+ * chosen by
+ * {@link Graph#breadthFirstSearch(String, String, Map, java.util.Deque)}.
+ * This requires the adjacency lists of the graph to keep their order upon
+ * removal, as {@link Graph#remove(String...)} does.
+ *
+ * Before detaching anything, the cost of the repair is estimated from the
+ * number of adjacency list entries of the affected nodes, each of which is
+ * examined once by every pass over them. When that estimate exceeds a given
+ * fraction of the entries examined by the last full search, the tree is
+ * recomputed from scratch instead. The default fraction is well below one,
+ * since a repair does several times more work per entry than a plain search.
+ *
+ * The amount of work done by each update is recorded, so that it can be
+ * compared with that of a full recomputation.
+ */
+public class BFSTree {
+    /**
+     * Default fraction of the cost of a full recomputation that the estimated
+     * cost of a repair must exceed for the tree to be recomputed from scratch.
+     */
+    public static final double DEFAULT_RECOMPUTE_FRACTION = 0.2;
+    /**
+     * Number of passes a repair makes over the adjacency lists of the
+     * affected nodes: finding their initial distances, relaxing their
+     * neighbors and choosing their predecessors.
+     */
+    private static final int REPAIR_PASSES = 3;
+
+    private final String source;
+    private final double recomputeFraction;
+    private final Map<String, Integer> dist = new HashMap<>();
+    private final Map<String, String> pred = new HashMap<>();
+    private final Map<String, Set<String>> children = new HashMap<>();
+    /**
+     * Position of each node within the adjacency list of its predecessor.
+     * Only positions of children of the same predecessor are compared, so
+     * they remain valid when earlier entries of that list are removed.
+     */
+    private final Map<String, Integer> slot = new HashMap<>();
+
+    private long lastUpdateWork;
+    private boolean lastUpdateFull;
+    /**
+     * Adjacency list entries examined by the last full search.
+     */
+    private long fullWork;
+
+    /**
+     * Construct the breadth first search tree of a graph, using the default
+     * recomputation fraction.
+     *
+     * @param g graph to search.
+     * @param s name of the source node.
+     * @throws IllegalArgumentException if the source node cannot be found in
+     *                                  the graph.
+     */
+    public BFSTree(Graph g, String s) {
+        this(g, s, DEFAULT_RECOMPUTE_FRACTION);
+    }
+
+    /**
+     * Construct the breadth first search tree of a graph.
+     *
+     * @param g graph to search.
+     * @param s name of the source node.
+     * @param recomputeFraction fraction of the cost of a full recomputation
+     *                          that the estimated cost of a repair must
+     *                          exceed for the tree to be recomputed from
+     *                          scratch, between 0 and 1.
+     * @throws IllegalArgumentException if the source node cannot be found in
+     *                                  the graph, or the fraction is out of
+     *                                  range.
+     */
+    public BFSTree(Graph g, String s, double recomputeFraction) {
+        if (g.getNode(s) == null)
+            throw new IllegalArgumentException(
+                    "source node not contained in graph.");
+        if ((recomputeFraction < 0) || (recomputeFraction > 1))
+            throw new IllegalArgumentException(
+                    "recompute fraction must be between 0 and 1.");
+
+        source = s;
+        this.recomputeFraction = recomputeFraction;
+        recompute(g);
+    }
+
+    /**
+     * Obtain the name of the source node.
+     *
+     * @return name of the source node.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Obtain the distance of each node reachable from the source node.
+     *
+     * This map is immutable, and unreachable nodes have no entry in it.
+     *
+     * @return map from node names to distances, in number of edges.
+     */
+    public Map<String, Integer> getDistances() {
+        return Collections.unmodifiableMap(dist);
+    }
+
+    /**
+     * Obtain the predecessor of each node reachable from the source node,
+     * in the format used by {@link Helpers#BFSPathExtract(String, String,
+     * Map)}.
+     *
+     * This map is immutable, and the source node is its own predecessor.
+     *
+     * @return map from node names to the names of their predecessors.
+     */
+    public Map<String, String> getPredecessors() {
+        return Collections.unmodifiableMap(pred);
+    }
+
+    /**
+     * Obtain the amount of work done by the last update, or by the
+     * construction of the tree if it has not been updated.
+     *
+     * This counts adjacency list entries examined, plus the nodes detached
+     * from the tree before reattachment, and the steps taken up the tree to
+     * compare the search order of candidate predecessors.
+     *
+     * @return work done.
+     */
+    public long getLastUpdateWork() {
+        return lastUpdateWork;
+    }
+
+    /**
+     * Check whether the last update recomputed the tree from scratch.
+     *
+     * @return whether the tree was recomputed.
+     */
+    public boolean wasLastUpdateFull() {
+        return lastUpdateFull;
+    }
+
+    /**
+     * Update the tree after nodes have been removed from the graph.
+     *
+     * @param g graph with the nodes removed, such as the one returned from
+     *          {@link Graph#remove(String...)} when called on the graph this
+     *          tree currently represents.
+     * @param removed names of the nodes removed.
+     * @throws IllegalArgumentException if the source node was removed, or
+     *                                  a removed node is still contained in
+     *                                  the graph.
+     */
+    public void remove(Graph g, Collection<String> removed) {
+        var removedSet = new HashSet<>(removed);
+        if (removedSet.contains(source))
+            throw new IllegalArgumentException("source node removed.");
+        if (removed.stream().anyMatch(name -> g.getNode(name) != null))
+            throw new IllegalArgumentException("one or more removed nodes " +
+                    "are still contained in the graph.");
+
+        lastUpdateWork = 0;
+        if (!isRepairCheaper(g, removedSet)) {
+            recompute(g);
+            return;
+        }
+
+        var affected = detach(removedSet);
+        reattach(g, affected);
+        reorder(g, affected);
+    }
+
+    /**
+     * Update the tree after nodes have been removed from the graph.
+     *
+     * @param g graph with the nodes removed.
+     * @param removed names of the nodes removed.
+     * @throws IllegalArgumentException if the source node was removed, or
+     *                                  a removed node is still contained in
+     *                                  the graph.
+     * @see #remove(Graph, Collection)
+     */
+    public void remove(Graph g, String... removed) {
+        remove(g, Arrays.asList(removed));
+    }
+
+    /**
+     * Estimate whether repairing the tree costs less than the given fraction
+     * of a full recomputation, by summing the adjacency list lengths of the
+     * nodes that would be affected.
+     *
+     * The subtrees of the removed nodes are only walked until the estimate
+     * exceeds that fraction, so that deciding to recompute costs no more than
+     * the fraction of a recomputation.
+     *
+     * @param g graph with the nodes removed.
+     * @param removed names of the nodes removed.
+     * @return whether the tree should be repaired.
+     */
+    private boolean isRepairCheaper(Graph g, Set<String> removed) {
+        var limit = recomputeFraction * fullWork;
+        var estimate = 0L;
+        var pending = new ArrayDeque<String>();
+        for (var r : removed) {
+            if (pred.containsKey(r))
+                pending.add(r);
+        }
+
+        while (!pending.isEmpty()) {
+            var n = pending.removeFirst();
+            ++lastUpdateWork;
+            var node = g.getNode(n);
+            if (node != null)
+                estimate += REPAIR_PASSES * node.getNeighborCount();
+            if (estimate > limit)
+                return false;
+
+            /* removed descendants of removed nodes are walked only once */
+            for (var child : children.getOrDefault(n, Collections.emptySet())) {
+                if (!removed.contains(child))
+                    pending.add(child);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Remove the removed nodes and their descendants from the tree.
+     *
+     * @param removed names of the nodes removed.
+     * @return names of the descendants of the removed nodes that remain in
+     *         the graph.
+     */
+    private Set<String> detach(Set<String> removed) {
+        var affected = new HashSet<String>();
+        var pending = new ArrayDeque<String>();
+
+        for (var r : removed) {
+            var p = pred.get(r);
+            if (p == null)
+                continue;
+
+            var siblings = children.get(p);
+            if (siblings != null)
+                siblings.remove(r);
+            pending.add(r);
+        }
+
+        while (!pending.isEmpty()) {
+            var n = pending.removeFirst();
+            ++lastUpdateWork;
+            dist.remove(n);
+            pred.remove(n);
+            slot.remove(n);
+
+            var c = children.remove(n);
+            if (c == null)
+                continue;
+
+            for (var child : c) {
+                if (!removed.contains(child))
+                    affected.add(child);
+                pending.add(child);
+            }
+        }
+
+        return affected;
+    }
+
+    /**
+     * Reattach affected nodes to the tree, in increasing order of their new
+     * distance from the source.
+     *
+     * @param g graph with the nodes removed.
+     * @param affected names of the nodes to reattach.
+     */
+    private void reattach(Graph g, Set<String> affected) {
+        var work = 0L;
+        var tentative = new HashMap<String, Integer>();
+        var candidate = new HashMap<String, String>();
+        var buckets = new TreeMap<Integer, ArrayDeque<String>>();
+
+        for (var v : affected) {
+            var best = Integer.MAX_VALUE;
+            String bestPred = null;
+            for (var neigh : g.getNode(v).getNeighbors()) {
+                ++work;
+                var d = dist.get(neigh.getName());
+                if ((d != null) && (d + 1 < best)) {
+                    best = d + 1;
+                    bestPred = neigh.getName();
+                }
+            }
+
+            if (bestPred == null)
+                continue;
+
+            tentative.put(v, best);
+            candidate.put(v, bestPred);
+            buckets.computeIfAbsent(best, k -> new ArrayDeque<>()).add(v);
+        }
+
+        while (!buckets.isEmpty()) {
+            var bucket = buckets.pollFirstEntry();
+            var level = bucket.getKey();
+
+            for (var v : bucket.getValue()) {
+                /* skip stale entries for nodes already attached */
+                if (dist.containsKey(v) || (!tentative.get(v).equals(level)))
+                    continue;
+
+                var p = candidate.get(v);
+                attach(v, p, level);
+
+                for (var neigh : g.getNode(v).getNeighbors()) {
+                    ++work;
+                    var name = neigh.getName();
+                    if ((!affected.contains(name)) || dist.containsKey(name))
+                        continue;
+
+                    var d = tentative.get(name);
+                    if ((d != null) && (d <= level + 1))
+                        continue;
+
+                    tentative.put(name, level + 1);
+                    candidate.put(name, v);
+                    buckets.computeIfAbsent(level + 1,
+                            k -> new ArrayDeque<>()).add(name);
+                }
+            }
+        }
+
+        lastUpdateWork += work;
+        lastUpdateFull = false;
+    }
+
+    /**
+     * Recompute the tree from scratch using a breadth first search.
+     *
+     * @param g graph to search.
+     */
+    private void recompute(Graph g) {
+        var work = 0L;
+        dist.clear();
+        pred.clear();
+        children.clear();
+        slot.clear();
+
+        var queue = new ArrayDeque<Node<String>>();
+        queue.add(g.getNode(source));
+        dist.put(source, 0);
+        pred.put(source, source);
+        while (!queue.isEmpty()) {
+            var n = queue.removeFirst();
+            var d = dist.get(n.getName());
+
+            var neighbors = n.getNeighbors();
+            for (var i = 0; i < neighbors.size(); ++i) {
+                ++work;
+                var neigh = neighbors.get(i);
+                if (dist.containsKey(neigh.getName()))
+                    continue;
+
+                queue.add(neigh);
+                attach(neigh.getName(), n.getName(), d + 1);
+                slot.put(neigh.getName(), i);
+            }
+        }
+
+        fullWork = work;
+        lastUpdateWork += work;
+        lastUpdateFull = true;
+    }
+
+    /**
+     * Give each reattached node the predecessor a fresh search would, in
+     * increasing order of distance: its earliest neighbor in the search order
+     * among those one level closer to the source.
+     *
+     * @param g graph with the nodes removed.
+     * @param affected names of the reattached nodes.
+     */
+    private void reorder(Graph g, Set<String> affected) {
+        var work = 0L;
+        var levels = new TreeMap<Integer, List<String>>();
+        for (var v : affected) {
+            var d = dist.get(v);
+            if (d != null)
+                levels.computeIfAbsent(d, k -> new ArrayList<>()).add(v);
+        }
+
+        /* predecessors whose children are numbered as in the new graph */
+        var renumbered = new HashMap<String, Map<String, Integer>>();
+        for (var level : levels.entrySet()) {
+            var d = level.getKey();
+            for (var v : level.getValue()) {
+                String best = null;
+                for (var neigh : g.getNode(v).getNeighbors()) {
+                    ++work;
+                    var name = neigh.getName();
+                    if ((!Objects.equals(dist.get(name), d - 1))
+                            || ((best != null)
+                                && (compareOrder(name, best) >= 0)))
+                        continue;
+
+                    best = name;
+                }
+
+                children.get(pred.get(v)).remove(v);
+                attach(v, best, d);
+                work += renumber(g, best, renumbered);
+                slot.put(v, renumbered.get(best).get(v));
+            }
+        }
+
+        lastUpdateWork += work;
+    }
+
+    /**
+     * Compare the positions of two nodes at the same distance from the
+     * source in the order a fresh search would visit them.
+     *
+     * Nodes are visited in the order of their predecessors, and children of
+     * the same predecessor in adjacency list order. Each step taken up the
+     * tree is counted as work.
+     *
+     * @param a name of the first node.
+     * @param b name of the second node.
+     * @return negative, zero or positive if the first node is visited before,
+     *         together with or after the second node.
+     */
+    private int compareOrder(String a, String b) {
+        while (!a.equals(b)) {
+            var pa = pred.get(a);
+            var pb = pred.get(b);
+            if (pa.equals(pb))
+                return Integer.compare(slot.get(a), slot.get(b));
+
+            ++lastUpdateWork;
+            a = pa;
+            b = pb;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Number the children of a node by their positions within its
+     * adjacency list in the new graph, once per update.
+     *
+     * @param g graph with the nodes removed.
+     * @param p name of the node.
+     * @param renumbered positions within the adjacency lists of the nodes
+     *                   already renumbered in this update.
+     * @return work done.
+     */
+    private long renumber(Graph g, String p,
+                          Map<String, Map<String, Integer>> renumbered) {
+        if (renumbered.containsKey(p))
+            return 0;
+
+        var positions = new HashMap<String, Integer>();
+        var neighbors = g.getNode(p).getNeighbors();
+        for (var i = 0; i < neighbors.size(); ++i)
+            positions.putIfAbsent(neighbors.get(i).getName(), i);
+        renumbered.put(p, positions);
+
+        for (var child : children.getOrDefault(p, Collections.emptySet()))
+            slot.put(child, positions.get(child));
+
+        return neighbors.size();
+    }
+
+    private void attach(String n, String p, int d) {
+        dist.put(n, d);
+        pred.put(n, p);
+        children.computeIfAbsent(p, k -> new HashSet<>()).add(n);
+    }
+}
@@ -0,0 +1,61 @@
+package Lab4.graph;
+
+import java.util.Arrays;
+
+/**
+ * Snapshot of the adjacency lists of a {@link Graph} in compact integer
+ * arrays, for algorithms that run many searches over the same graph.
+ *
+ * Nodes are identified by integer indices, assigned in the default name
+ * (string) sort order. The adjacency lists of all nodes are stored back to
+ * back in a single array of node indices, in the visitation order of the
+ * graph. The graph is not referenced after construction.
+ */
+class CompactGraph {
+    /**
+     * Names of the nodes, indexed by node index.
+     */
+    final String[] names;
+    /**
+     * Offset of the first neighbor of each node within the adjacency array,
+     * followed by the total length of the adjacency array.
+     */
+    final int[] offsets;
+    final int[] adjacency;
+
+    /**
+     * Take a snapshot of a graph.
+     *
+     * @param g graph to take a snapshot of.
+     */
+    CompactGraph(Graph g) {
+        names = g.getNames().toArray(new String[0]);
+        offsets = new int[names.length + 1];
+
+        var endpoints = 0;
+        var index = 0;
+        for (var entry : g.getNodes()) {
+            offsets[index++] = endpoints;
+            endpoints += entry.getValue().getNeighborCount();
+        }
+        offsets[index] = endpoints;
+
+        adjacency = new int[endpoints];
+        var offset = 0;
+        for (var entry : g.getNodes()) {
+            for (var neigh : entry.getValue().getNeighbors())
+                adjacency[offset++] = indexOf(neigh.getName());
+        }
+    }
+
+    /**
+     * Obtain the index of a node.
+     *
+     * @param name name of the node.
+     * @return index of the node, or a negative number if there is no node
+     *         with the given name in the graph.
+     */
+    int indexOf(String name) {
+        return Arrays.binarySearch(names, name);
+    }
+}
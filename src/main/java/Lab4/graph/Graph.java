@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.io.Reader;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Class representing a undirected and unweighted graph, with no self-edges
@@ -137,6 +138,17 @@ public class Graph {
         return Collections.unmodifiableSet(nodes.keySet());
     }
 
+    /**
+     * Obtain a node contained within the graph.
+     *
+     * @param name name of the node.
+     * @return node with the given name, or {@code null} if there is no such
+     *         node in the graph.
+     */
+    Node<String> getNode(String name) {
+        return nodes.get(name);
+    }
+
     /**
      * Rearrange the adjacency lists storing neighbor information in each
      * of the nodes using the provided function.
@@ -173,18 +185,18 @@ public class Graph {
                 .filter(name -> !namesToRemove.contains(name))
                 .forEach(name -> newNodes.put(name, new Node<String>(name)));
 
+        /*
+         * Adjacency lists are copied one by one, rather than by linking
+         * nodes to each other, so that the order of each list is kept.
+         */
         for (var newNodeName : newNodes.keySet()) {
             var oldNode = nodes.get(newNodeName);
             var newNode = newNodes.get(newNodeName);
 
-            oldNode.getNeighbors().stream()
+            newNode.updateNeighbors(oldNode.getNeighbors().stream()
                     .filter(neigh -> !namesToRemove.contains(neigh.getName()))
-                    .forEach(neigh -> {
-                        var oldLinkedNodeName = neigh.getName();
-                        var newLinkedNode = newNodes.get(oldLinkedNodeName);
-                        if (!newNode.isNeighbor(newLinkedNode))
-                            newNode.addNeighbor(newLinkedNode);
-                    });
+                    .map(neigh -> newNodes.get(neigh.getName()))
+                    .collect(Collectors.toList()));
         }
 
         return new Graph(newNodes, false);
@@ -218,6 +230,40 @@ public class Graph {
     public void breadthFirstSearch(String s, String t,
                                    Map<String, String> pred,
                                    Deque<Node<String>> queue) {
+        breadthFirstSearch(s, t, pred, queue, null);
+    }
+
+    /**
+     * Performs a breadth first search on the graph, visiting the neighbors of
+     * each node in a randomized order, attempting the locate a node, and
+     * recovering the path to that node.
+     *
+     * The adjacency lists stored in the graph are not modified. Instead,
+     * every time a node is expanded, its neighbors are visited starting from
+     * a randomly chosen position in its adjacency list, wrapping around to
+     * the start of the list. This costs a single draw from the random source
+     * per expanded node, so the search runs in the same time as one using the
+     * fixed adjacency list ordering.
+     *
+     * Since the graph is left untouched, concurrent searches on the same graph
+     * are safe, provided each search uses its own collections.
+     *
+     * The same requirements on the collections passed to
+     * {@link #breadthFirstSearch(String, String, Map, Deque)} apply.
+     *
+     * @param s name of source node to start BFS from.
+     * @param t name of target node to find.
+     * @param pred map used to store node predecessor information.
+     * @param queue queue used to store nodes pending visitation.
+     * @param rnd random source used to pick the starting position within
+     *            each adjacency list, or {@code null} to use the stored order.
+     * @throws IllegalArgumentException if the source or target node cannot
+     *                                  be found in the graph.
+     */
+    public void breadthFirstSearch(String s, String t,
+                                   Map<String, String> pred,
+                                   Deque<Node<String>> queue,
+                                   Random rnd) {
 
         if ((!nodes.containsKey(s)) || (!nodes.containsKey(t)))
             throw new IllegalArgumentException(
@@ -227,8 +273,15 @@ public class Graph {
         pred.put(s, s);
         while (!queue.isEmpty()) {
             var n = queue.removeFirst();
-
-            for (var neigh : n.getNeighbors()) {
+            var neighbors = n.getNeighbors();
+            var count = neighbors.size();
+            if (count == 0)
+                continue;
+
+            var offset = (rnd == null) ? 0 : rnd.nextInt(count);
+            for (var i = 0; i < count; ++i) {
+                var idx = offset + i;
+                var neigh = neighbors.get(idx < count ? idx : idx - count);
                 if (pred.containsKey(neigh.getName()))
                     continue;
 
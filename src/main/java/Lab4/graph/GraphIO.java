@@ -0,0 +1,398 @@
+package Lab4.graph;
+
+import org.apache.commons.csv.CSVFormat;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Streaming import and export of graphs in CSV, GraphML and DOT formats.
+ *
+ * Exporters write each node and edge directly to the output as the graph
+ * is traversed, so memory usage does not depend on the size of the graph.
+ *
+ * Each exporter optionally accepts a predicate selecting the nodes to
+ * write, allowing the subgraph induced by those nodes to be exported
+ * without building a copy of it first.
+ *
+ * Writers and streams passed to these methods are flushed, but not closed.
+ */
+public class GraphIO {
+    private static final String GRAPHML_NS =
+            "http://graphml.graphdrawing.org/xmlns";
+    private static final String XSI_NS =
+            "http://www.w3.org/2001/XMLSchema-instance";
+    private static final String GRAPHML_SCHEMA_LOCATION = GRAPHML_NS + " " +
+            "http://graphml.graphdrawing.org/xmlns/1.0/graphml.xsd";
+
+    private GraphIO() {
+    }
+
+    /**
+     * Write a graph in the CSV adjacency list format accepted by
+     * {@link Graph#Graph(Reader, java.util.function.Consumer)}.
+     *
+     * @param g graph to write.
+     * @param w writer to write to.
+     * @throws IOException on I/O error.
+     */
+    public static void WriteCSV(Graph g, Writer w) throws IOException {
+        WriteCSV(g, w, name -> true);
+    }
+
+    /**
+     * Write the subgraph of a graph induced by the selected nodes in the
+     * CSV adjacency list format.
+     *
+     * Each row contains the name of a node, followed by the names of its
+     * neighbors in visitation order.
+     *
+     * Reloading the output yields a graph with the same nodes and edges, but
+     * not necessarily the same visitation order: the loader appends each
+     * edge to the adjacency lists of both of its nodes when it is first
+     * read, so a node's adjacency list is ordered by when its edges are first
+     * encountered in the file, rather than by the order of its own row.
+     *
+     * @param g graph to write.
+     * @param w writer to write to.
+     * @param include predicate selecting the names of nodes to write.
+     * @throws IOException on I/O error.
+     */
+    public static void WriteCSV(Graph g, Writer w,
+                                Predicate<String> include) throws IOException {
+        var printer = CSVFormat.RFC4180.print(w);
+
+        for (var entry : g.getNodes()) {
+            if (!include.test(entry.getKey()))
+                continue;
+
+            printer.print(entry.getKey());
+            for (var neigh : entry.getValue().getNeighbors()) {
+                if (include.test(neigh.getName()))
+                    printer.print(neigh.getName());
+            }
+            printer.println();
+        }
+
+        printer.flush();
+    }
+
+    /**
+     * Write a graph in the CSV adjacency list format, encoded in UTF-8.
+     *
+     * @param g graph to write.
+     * @param os stream to write to.
+     * @param include predicate selecting the names of nodes to write.
+     * @throws IOException on I/O error.
+     */
+    public static void WriteCSV(Graph g, OutputStream os,
+                                Predicate<String> include) throws IOException {
+        var w = Utf8Writer(os);
+        WriteCSV(g, w, include);
+        w.flush();
+    }
+
+    /**
+     * Write a graph in GraphML format.
+     *
+     * @param g graph to write.
+     * @param w writer to write to.
+     * @throws IOException on I/O error.
+     */
+    public static void WriteGraphML(Graph g, Writer w) throws IOException {
+        WriteGraphML(g, w, name -> true);
+    }
+
+    /**
+     * Write the subgraph of a graph induced by the selected nodes in
+     * GraphML format.
+     *
+     * All nodes are written before any edges. Each undirected edge
+     * is written once, so as with {@link #WriteCSV(Graph, Writer, Predicate)},
+     * reading the output back does not restore the visitation order.
+     *
+     * @param g graph to write.
+     * @param w writer to write to.
+     * @param include predicate selecting the names of nodes to write.
+     * @throws IOException on I/O error.
+     */
+    public static void WriteGraphML(Graph g, Writer w,
+                                    Predicate<String> include)
+            throws IOException {
+        try {
+            var xml = XMLOutputFactory.newFactory().createXMLStreamWriter(w);
+            WriteGraphML(g, xml, include);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        w.flush();
+    }
+
+    /**
+     * Write a graph in GraphML format, encoded in UTF-8.
+     *
+     * @param g graph to write.
+     * @param os stream to write to.
+     * @param include predicate selecting the names of nodes to write.
+     * @throws IOException on I/O error.
+     */
+    public static void WriteGraphML(Graph g, OutputStream os,
+                                    Predicate<String> include)
+            throws IOException {
+        var w = Utf8Writer(os);
+        WriteGraphML(g, w, include);
+        w.flush();
+    }
+
+    private static void WriteGraphML(Graph g, XMLStreamWriter xml,
+                                     Predicate<String> include)
+            throws XMLStreamException {
+        xml.writeStartDocument("1.0");
+        xml.writeStartElement("graphml");
+        xml.writeDefaultNamespace(GRAPHML_NS);
+        xml.writeNamespace("xsi", XSI_NS);
+        xml.writeAttribute(XSI_NS, "schemaLocation", GRAPHML_SCHEMA_LOCATION);
+        xml.writeStartElement("graph");
+        xml.writeAttribute("edgedefault", "undirected");
+
+        for (var name : g.getNames()) {
+            if (!include.test(name))
+                continue;
+
+            xml.writeCharacters("\n");
+            xml.writeEmptyElement("node");
+            xml.writeAttribute("id", name);
+        }
+
+        for (var entry : g.getNodes()) {
+            var name = entry.getKey();
+            if (!include.test(name))
+                continue;
+
+            for (var neigh : entry.getValue().getNeighbors()) {
+                var neighName = neigh.getName();
+                /* only write the edge from the lesser named node */
+                if ((name.compareTo(neighName) > 0)
+                        || (!include.test(neighName)))
+                    continue;
+
+                xml.writeCharacters("\n");
+                xml.writeEmptyElement("edge");
+                xml.writeAttribute("source", name);
+                xml.writeAttribute("target", neighName);
+            }
+        }
+
+        xml.writeCharacters("\n");
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.flush();
+        xml.close();
+    }
+
+    /**
+     * Write a graph in the DOT language.
+     *
+     * @param g graph to write.
+     * @param w writer to write to.
+     * @throws IOException on I/O error.
+     */
+    public static void WriteDOT(Graph g, Writer w) throws IOException {
+        WriteDOT(g, w, name -> true);
+    }
+
+    /**
+     * Write the subgraph of a graph induced by the selected nodes in the
+     * DOT language, as an undirected graph.
+     *
+     * Each undirected edge is written once. Node names are written as quoted
+     * strings, in which only double quotes are escaped, since DOT leaves any
+     * other backslash as is. A name ending in a backslash therefore cannot be
+     * represented, and is not read back correctly.
+     *
+     * @param g graph to write.
+     * @param w writer to write to.
+     * @param include predicate selecting the names of nodes to write.
+     * @throws IOException on I/O error.
+     */
+    public static void WriteDOT(Graph g, Writer w,
+                                Predicate<String> include) throws IOException {
+        w.write("graph {\n");
+
+        for (var entry : g.getNodes()) {
+            var name = entry.getKey();
+            if (!include.test(name))
+                continue;
+
+            w.write('\t');
+            WriteDOTId(w, name);
+            w.write(";\n");
+
+            for (var neigh : entry.getValue().getNeighbors()) {
+                var neighName = neigh.getName();
+                if ((name.compareTo(neighName) > 0)
+                        || (!include.test(neighName)))
+                    continue;
+
+                w.write('\t');
+                WriteDOTId(w, name);
+                w.write(" -- ");
+                WriteDOTId(w, neighName);
+                w.write(";\n");
+            }
+        }
+
+        w.write("}\n");
+        w.flush();
+    }
+
+    /**
+     * Write a graph in the DOT language, encoded in UTF-8.
+     *
+     * @param g graph to write.
+     * @param os stream to write to.
+     * @param include predicate selecting the names of nodes to write.
+     * @throws IOException on I/O error.
+     */
+    public static void WriteDOT(Graph g, OutputStream os,
+                                Predicate<String> include) throws IOException {
+        var w = Utf8Writer(os);
+        WriteDOT(g, w, include);
+        w.flush();
+    }
+
+    /**
+     * Read a graph in GraphML format.
+     *
+     * The document is processed as a stream, with only the nodes and edges
+     * retained. Edges are treated as undirected, and repeated edges between
+     * the same two nodes are ignored. Adjacency lists are ordered in the
+     * order edges are encountered in the document.
+     *
+     * Document type declarations and external entities are not processed.
+     *
+     * @param r reader to load the graph from.
+     * @return graph read.
+     * @throws IOException on I/O error, or if the document is not well-formed.
+     * @throws IllegalArgumentException if a node has no id, or an edge has
+     *                                  no source or target, or refers to an
+     *                                  undeclared node.
+     */
+    public static Graph ReadGraphML(Reader r) throws IOException {
+        try {
+            return ReadGraphML(InputFactory().createXMLStreamReader(r));
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Read a graph in GraphML format, using the encoding declared in the
+     * document.
+     *
+     * @param is stream to load the graph from.
+     * @return graph read.
+     * @throws IOException on I/O error, or if the document is not well-formed.
+     * @throws IllegalArgumentException if a node has no id, or an edge has
+     *                                  no source or target, or refers to an
+     *                                  undeclared node.
+     */
+    public static Graph ReadGraphML(InputStream is) throws IOException {
+        try {
+            return ReadGraphML(InputFactory().createXMLStreamReader(is));
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static Graph ReadGraphML(XMLStreamReader xml)
+            throws XMLStreamException {
+        var nodes = new TreeMap<String, Node<String>>();
+
+        try {
+            while (xml.hasNext()) {
+                if (xml.next() != XMLStreamConstants.START_ELEMENT)
+                    continue;
+
+                switch (xml.getLocalName()) {
+                    case "node":
+                        var id = xml.getAttributeValue(null, "id");
+                        if (id == null)
+                            throw new IllegalArgumentException(String.format(
+                                    "line %d: node without id.",
+                                    xml.getLocation().getLineNumber()));
+                        nodes.putIfAbsent(id, new Node<>(id));
+                        break;
+                    case "edge":
+                        var source = xml.getAttributeValue(null, "source");
+                        var target = xml.getAttributeValue(null, "target");
+                        if ((source == null) || (target == null))
+                            throw new IllegalArgumentException(String.format(
+                                    "line %d: edge without source / target.",
+                                    xml.getLocation().getLineNumber()));
+
+                        var s = nodes.get(source);
+                        var t = nodes.get(target);
+                        if ((s == null) || (t == null))
+                            throw new IllegalArgumentException(String.format(
+                                    "line %d: edge endpoint not declared.",
+                                    xml.getLocation().getLineNumber()));
+                        if (!s.isNeighbor(t))
+                            s.addNeighbor(t);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            xml.close();
+        }
+
+        return new Graph(nodes, false);
+    }
+
+    /**
+     * Create a StAX input factory that does not process DTDs or resolve
+     * external entities, since documents may come from untrusted sources.
+     *
+     * @return input factory.
+     */
+    private static XMLInputFactory InputFactory() {
+        var factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                            false);
+        return factory;
+    }
+
+    private static void WriteDOTId(Writer w, String id) throws IOException {
+        w.write('"');
+        for (var i = 0; i < id.length(); ++i) {
+            var c = id.charAt(i);
+            if (c == '"')
+                w.write('\\');
+            w.write(c);
+        }
+        w.write('"');
+    }
+
+    private static Writer Utf8Writer(OutputStream os) {
+        return new BufferedWriter(
+                new OutputStreamWriter(os, StandardCharsets.UTF_8));
+    }
+}
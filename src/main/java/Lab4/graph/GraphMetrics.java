@@ -0,0 +1,505 @@
+package Lab4.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Computes distance-based metrics (diameter, radius and node eccentricities)
+ * of the largest connected component of a graph, in terms of hop counts.
+ *
+ * Exact values are obtained using as few breadth first searches as possible:
+ *
+ * - The diameter is computed using the iFUB algorithm, starting from the
+ *   midpoint of a path found by a double sweep, which also yields an initial
+ *   lower bound on the diameter.
+ * - Every search from a node v with eccentricity e tightens the eccentricity
+ *   bounds of every other node w to
+ *   {@code max(d(v, w), e - d(v, w)) <= ecc(w) <= e + d(v, w)}.
+ *   These bounds are used to skip searches that cannot change the diameter,
+ *   and to find the radius by only searching from nodes that may still be
+ *   centers.
+ *
+ * On most real-world graphs this requires only a handful of searches. When
+ * iFUB has to search from many nodes at the same distance from its starting
+ * node, those searches are run in parallel.
+ *
+ * The graph is copied into compact integer adjacency arrays upon
+ * construction, and is not referenced afterwards.
+ *
+ * Instances are safe for use from multiple threads.
+ */
+public class GraphMetrics {
+    /**
+     * Default minimum number of searches that must be pending at the same
+     * iFUB level for them to be run in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 64;
+
+    private final CompactGraph graph;
+    /**
+     * Nodes in the largest connected component.
+     */
+    private final int[] component;
+    /**
+     * Whether each node is in the largest connected component.
+     */
+    private final boolean[] inComponent;
+    private final int parallelThreshold;
+
+    private final int[] eccLower;
+    private final int[] eccUpper;
+    private final AtomicLong bfsRuns = new AtomicLong();
+    private final ThreadLocal<int[][]> scratch;
+
+    private int diameter = -1;
+    private int radius = -1;
+
+    /**
+     * Construct a metrics engine for a graph, using the default parallel
+     * search threshold.
+     *
+     * @param g graph to compute metrics for.
+     */
+    public GraphMetrics(Graph g) {
+        this(g, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Construct a metrics engine for a graph.
+     *
+     * @param g graph to compute metrics for.
+     * @param parallelThreshold minimum number of searches that must be
+     *                          pending at the same iFUB level for them to be
+     *                          run in parallel.
+     * @throws IllegalArgumentException if the graph is empty or the threshold
+     *                                  is not positive.
+     */
+    public GraphMetrics(Graph g, int parallelThreshold) {
+        if (g.getNodeCount() == 0)
+            throw new IllegalArgumentException("graph contains no nodes.");
+        if (parallelThreshold <= 0)
+            throw new IllegalArgumentException(
+                    "parallel threshold must be positive.");
+
+        this.parallelThreshold = parallelThreshold;
+        graph = new CompactGraph(g);
+
+        var nodeCount = graph.names.length;
+        scratch = ThreadLocal.withInitial(
+                () -> new int[][] { new int[nodeCount], new int[nodeCount] });
+        component = largestComponent();
+        inComponent = new boolean[nodeCount];
+        for (var n : component)
+            inComponent[n] = true;
+
+        eccLower = new int[nodeCount];
+        eccUpper = new int[nodeCount];
+        Arrays.fill(eccUpper, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Obtain the number of nodes in the largest connected component, which
+     * all metrics are computed over.
+     *
+     * @return count of nodes in the largest connected component.
+     */
+    public int getComponentSize() {
+        return component.length;
+    }
+
+    /**
+     * Obtain the number of breadth first searches performed so far.
+     *
+     * This excludes the single traversal of the whole graph used to find
+     * the largest connected component.
+     *
+     * @return count of searches performed.
+     */
+    public long getBFSRuns() {
+        return bfsRuns.get();
+    }
+
+    /**
+     * Obtain the exact diameter of the largest connected component,
+     * computing it if required.
+     *
+     * @return greatest eccentricity of any node in the component.
+     */
+    public synchronized int getDiameter() {
+        if (diameter < 0)
+            diameter = computeDiameter();
+
+        return diameter;
+    }
+
+    /**
+     * Obtain the exact radius of the largest connected component,
+     * computing it if required.
+     *
+     * @return least eccentricity of any node in the component.
+     */
+    public synchronized int getRadius() {
+        if (radius < 0)
+            radius = computeRadius();
+
+        return radius;
+    }
+
+    /**
+     * Obtain the exact eccentricity of a node, performing a search from
+     * that node only if its current bounds do not coincide.
+     *
+     * @param name name of the node.
+     * @return greatest distance from the node to any node in the component.
+     * @throws IllegalArgumentException if the node is not contained in the
+     *                                  largest connected component.
+     */
+    public synchronized int getEccentricity(String name) {
+        var n = componentIndexOf(name);
+        if (eccLower[n] != eccUpper[n])
+            search(n);
+
+        return eccLower[n];
+    }
+
+    /**
+     * Obtain the current lower bound on the eccentricity of a node.
+     *
+     * The bound is tightened by every search performed, including those
+     * performed to compute other metrics.
+     *
+     * @param name name of the node.
+     * @return eccentricity lower bound.
+     * @throws IllegalArgumentException if the node is not contained in the
+     *                                  largest connected component.
+     */
+    public synchronized int getEccentricityLowerBound(String name) {
+        return eccLower[componentIndexOf(name)];
+    }
+
+    /**
+     * Obtain the current upper bound on the eccentricity of a node.
+     *
+     * The bound is {@link Integer#MAX_VALUE} until the first search is
+     * performed, and is tightened by every search performed afterwards.
+     *
+     * @param name name of the node.
+     * @return eccentricity upper bound.
+     * @throws IllegalArgumentException if the node is not contained in the
+     *                                  largest connected component.
+     */
+    public synchronized int getEccentricityUpperBound(String name) {
+        return eccUpper[componentIndexOf(name)];
+    }
+
+    private int computeDiameter() {
+        var nodeCount = graph.names.length;
+        var dist = new int[nodeCount];
+        var order = new int[nodeCount];
+        var pred = new int[nodeCount];
+
+        /* double sweep: the farthest node from any node is peripheral-ish */
+        var r = maxDegreeNode();
+        updateBounds(bfs(r, dist, order, null), dist, eccLower, eccUpper);
+        var a = order[component.length - 1];
+        var lowerBound = bfs(a, dist, order, pred);
+        updateBounds(lowerBound, dist, eccLower, eccUpper);
+        var b = order[component.length - 1];
+
+        /* start iFUB from the midpoint of the path between a and b */
+        var u = b;
+        for (var i = 0; i < lowerBound / 2; ++i)
+            u = pred[u];
+
+        var eccU = bfs(u, dist, order, null);
+        updateBounds(eccU, dist, eccLower, eccUpper);
+        lowerBound = Math.max(lowerBound, eccU);
+
+        /* order now holds the nodes in non-decreasing distance from u */
+        var level = eccU;
+        var levelEnd = component.length;
+        while (2 * level > lowerBound) {
+            var levelStart = levelEnd;
+            while ((levelStart > 0) && (dist[order[levelStart - 1]] == level))
+                --levelStart;
+
+            var fringe = Arrays.copyOfRange(order, levelStart, levelEnd);
+            var fringeMax = fringeEccentricity(fringe, lowerBound,
+                                               2 * (level - 1));
+            lowerBound = Math.max(lowerBound, fringeMax);
+            if (lowerBound > 2 * (level - 1))
+                return lowerBound;
+
+            levelEnd = levelStart;
+            --level;
+        }
+
+        return lowerBound;
+    }
+
+    /**
+     * Find the greatest eccentricity of the nodes in an iFUB fringe, as far
+     * as it may exceed the current lower bound on the diameter.
+     *
+     * Parallel searches are shared out among one task per thread of the
+     * common fork-join pool, and the calling thread. Each task tightens
+     * bounds private to it, which are merged into the shared bounds once all
+     * searches have finished, so memory use grows with the number of
+     * threads rather than the number of searches.
+     *
+     * @param fringe nodes at the same distance from the iFUB start node.
+     * @param lowerBound current lower bound on the diameter.
+     * @param stopAbove value above which the greatest eccentricity is known to
+     *                  be the diameter, ending the search early.
+     * @return greatest eccentricity found, or the lower bound if no node
+     *         can exceed it.
+     */
+    private int fringeEccentricity(int[] fringe, int lowerBound,
+                                   int stopAbove) {
+        var pending = IntStream.of(fringe)
+                .filter(n -> eccUpper[n] > lowerBound)
+                .toArray();
+
+        if (pending.length >= parallelThreshold) {
+            var tasks = Math.min(pending.length,
+                                 ForkJoinPool.getCommonPoolParallelism() + 1);
+            var next = new AtomicInteger();
+            var results = IntStream.range(0, tasks)
+                    .parallel()
+                    .mapToObj(task -> {
+                        var bounds = new Bounds(graph.names.length);
+                        for (var i = next.getAndIncrement(); i < pending.length;
+                             i = next.getAndIncrement())
+                            bounds.search(pending[i]);
+                        return bounds;
+                    })
+                    .collect(Collectors.toList());
+
+            var max = lowerBound;
+            for (var bounds : results) {
+                bounds.mergeInto(eccLower, eccUpper);
+                max = Math.max(max, bounds.max);
+            }
+            return max;
+        }
+
+        var max = lowerBound;
+        for (var n : pending) {
+            /* may have been tightened by an earlier search in this fringe */
+            if (eccUpper[n] <= max)
+                continue;
+
+            max = Math.max(max, search(n));
+            if (max > stopAbove)
+                break;
+        }
+
+        return max;
+    }
+
+    private int computeRadius() {
+        var upperBound = Integer.MAX_VALUE;
+        for (var n : component)
+            upperBound = Math.min(upperBound, eccUpper[n]);
+
+        if (upperBound == Integer.MAX_VALUE)
+            upperBound = search(maxDegreeNode());
+
+        /* only nodes whose eccentricity may be below the best are searched */
+        while (true) {
+            var candidate = -1;
+            for (var n : component) {
+                if ((eccLower[n] >= upperBound)
+                        || (eccLower[n] == eccUpper[n]))
+                    continue;
+                if ((candidate < 0) || (eccLower[n] < eccLower[candidate]))
+                    candidate = n;
+            }
+
+            if (candidate < 0)
+                return upperBound;
+
+            upperBound = Math.min(upperBound, search(candidate));
+        }
+    }
+
+    /**
+     * Perform a search from a node using thread-local scratch space, and
+     * tighten the eccentricity bounds of all nodes using its results.
+     *
+     * @param n index of node to search from.
+     * @return eccentricity of the node.
+     */
+    private int search(int n) {
+        return search(n, eccLower, eccUpper);
+    }
+
+    /**
+     * Perform a search from a node using thread-local scratch space, and
+     * tighten a set of eccentricity bounds using its results.
+     *
+     * @param n index of node to search from.
+     * @param lower eccentricity lower bounds to tighten.
+     * @param upper eccentricity upper bounds to tighten.
+     * @return eccentricity of the node.
+     */
+    private int search(int n, int[] lower, int[] upper) {
+        var buffers = scratch.get();
+        var dist = buffers[0];
+        var ecc = bfs(n, dist, buffers[1], null);
+        updateBounds(ecc, dist, lower, upper);
+        return ecc;
+    }
+
+    /**
+     * Perform a breadth first search within the largest connected component.
+     *
+     * @param s index of node to start from.
+     * @param dist array to store the distance of each node from the source.
+     * @param order array to store nodes in the order they are visited.
+     * @param pred array to store node predecessors, or {@code null}.
+     * @return eccentricity of the source node.
+     */
+    private int bfs(int s, int[] dist, int[] order, int[] pred) {
+        bfsRuns.incrementAndGet();
+        Arrays.fill(dist, -1);
+        var offsets = graph.offsets;
+        var adjacency = graph.adjacency;
+
+        var head = 0;
+        var tail = 0;
+        order[tail++] = s;
+        dist[s] = 0;
+        while (head < tail) {
+            var n = order[head++];
+            for (var i = offsets[n]; i < offsets[n + 1]; ++i) {
+                var neigh = adjacency[i];
+                if (dist[neigh] >= 0)
+                    continue;
+
+                dist[neigh] = dist[n] + 1;
+                if (pred != null)
+                    pred[neigh] = n;
+                order[tail++] = neigh;
+            }
+        }
+
+        return dist[order[tail - 1]];
+    }
+
+    /**
+     * Tighten the eccentricity bounds of all nodes using the results of a
+     * search.
+     *
+     * @param ecc eccentricity of the node searched from.
+     * @param dist distance of each node from the node searched from.
+     * @param lower eccentricity lower bounds to tighten.
+     * @param upper eccentricity upper bounds to tighten.
+     */
+    private void updateBounds(int ecc, int[] dist, int[] lower, int[] upper) {
+        for (var n : component) {
+            var d = dist[n];
+            lower[n] = Math.max(lower[n], Math.max(d, ecc - d));
+            upper[n] = Math.min(upper[n], ecc + d);
+        }
+    }
+
+    private int[] largestComponent() {
+        var nodeCount = graph.names.length;
+        var offsets = graph.offsets;
+        var adjacency = graph.adjacency;
+        var label = new int[nodeCount];
+        Arrays.fill(label, -1);
+        var queue = new int[nodeCount];
+
+        var best = -1;
+        var bestSize = 0;
+        for (var s = 0; s < nodeCount; ++s) {
+            if (label[s] >= 0)
+                continue;
+
+            var head = 0;
+            var tail = 0;
+            queue[tail++] = s;
+            label[s] = s;
+            while (head < tail) {
+                var n = queue[head++];
+                for (var i = offsets[n]; i < offsets[n + 1]; ++i) {
+                    if (label[adjacency[i]] >= 0)
+                        continue;
+
+                    label[adjacency[i]] = s;
+                    queue[tail++] = adjacency[i];
+                }
+            }
+
+            if (tail > bestSize) {
+                best = s;
+                bestSize = tail;
+            }
+        }
+
+        var chosen = best;
+        return IntStream.range(0, nodeCount)
+                .filter(n -> label[n] == chosen)
+                .toArray();
+    }
+
+    private int maxDegreeNode() {
+        var offsets = graph.offsets;
+        var best = component[0];
+        for (var n : component) {
+            if ((offsets[n + 1] - offsets[n])
+                    > (offsets[best + 1] - offsets[best]))
+                best = n;
+        }
+
+        return best;
+    }
+
+    private int componentIndexOf(String name) {
+        var n = graph.indexOf(name);
+        if ((n < 0) || (!inComponent[n]))
+            throw new IllegalArgumentException(
+                    "node not contained in the largest connected component.");
+
+        return n;
+    }
+
+    /**
+     * Eccentricity bounds tightened by the searches of a single task,
+     * along with the greatest eccentricity found by those searches.
+     */
+    private class Bounds {
+        private final int[] lower;
+        private final int[] upper;
+        private int max;
+
+        Bounds(int nodeCount) {
+            lower = new int[nodeCount];
+            upper = new int[nodeCount];
+            Arrays.fill(upper, Integer.MAX_VALUE);
+        }
+
+        void search(int n) {
+            max = Math.max(max, GraphMetrics.this.search(n, lower, upper));
+        }
+
+        /**
+         * Tighten another set of bounds using these bounds.
+         *
+         * @param otherLower eccentricity lower bounds to tighten.
+         * @param otherUpper eccentricity upper bounds to tighten.
+         */
+        void mergeInto(int[] otherLower, int[] otherUpper) {
+            for (var n : component) {
+                otherLower[n] = Math.max(otherLower[n], lower[n]);
+                otherUpper[n] = Math.min(otherUpper[n], upper[n]);
+            }
+        }
+    }
+}
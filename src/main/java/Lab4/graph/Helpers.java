@@ -57,4 +57,47 @@ public class Helpers {
 
         return l;
     }
+
+    /**
+     * Recover the shortest path from a source node to a target node
+     * from the predecessor array filled by a BFS on an off-heap graph.
+     *
+     * There must be a valid path contained in the predecessor array.
+     *
+     * @param g graph the search was performed on.
+     * @param source index of the source node.
+     * @param target index of the target node.
+     * @param pred predecessor array.
+     * @return List containing names of nodes that must be traversed
+     *         (including the source node and target nodes) in order
+     *         to reach the target node while transitioning through the lowest
+     *         number of edges.
+     * @throws IllegalArgumentException if there is no valid path contained
+     *                                  in the predecessor array.
+     */
+    public static List<String> BFSPathExtract(OffHeapGraph g, int source,
+                                              int target, int[] pred) {
+        var l = new ArrayList<String>();
+
+        if (pred[target] == -1)
+            throw new IllegalArgumentException(
+                    "the target node is not found in the predecessor array.");
+
+        while (target != source) {
+            var p = pred[target];
+            l.add(g.getName(target));
+
+            if ((p == -1) || (l.size() > g.getNodeCount())) {
+                throw new IllegalArgumentException(
+                    "the source node is not found in the predecessor array.");
+            }
+
+            target = p;
+        }
+
+        l.add(g.getName(target));
+        Collections.reverse(l);
+
+        return l;
+    }
 }
@@ -0,0 +1,138 @@
+package Lab4.graph;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed-size block of native memory addressed using long byte offsets.
+ *
+ * The memory is made up of direct byte buffers of at most
+ * {@code 1 << CHUNK_SHIFT} bytes each, since a single buffer is limited to
+ * {@code Integer.MAX_VALUE} bytes.
+ *
+ * Values must be aligned to their size, so that no value straddles two
+ * chunks.
+ *
+ * Direct buffers count against the JVM's direct memory limit, set using
+ * {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size.
+ * The limit must be raised for blocks larger than the heap; the application
+ * and benchmark tasks in the build script do so.
+ *
+ * Instances are not safe for concurrent modification.
+ */
+class OffHeapBuffer implements AutoCloseable {
+    /**
+     * Base 2 logarithm of the size of each chunk, in bytes.
+     */
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    /**
+     * Method used to release the memory backing a direct buffer, or
+     * {@code null} if that is not possible on this JVM.
+     */
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            var unsafeClass = Class.forName("sun.misc.Unsafe");
+            var field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+                    ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            /* memory is then released when the buffers are collected */
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    private ByteBuffer[] chunks;
+    private final long size;
+
+    /**
+     * Allocate a new zero-filled block of native memory.
+     *
+     * @param bytes size of the block, in bytes.
+     * @throws IllegalArgumentException if the size is negative.
+     * @throws OutOfMemoryError if the direct memory limit would be exceeded.
+     */
+    OffHeapBuffer(long bytes) {
+        if (bytes < 0)
+            throw new IllegalArgumentException("size must be non-negative.");
+
+        size = bytes;
+        var count = (int) ((bytes + CHUNK_MASK) >>> CHUNK_SHIFT);
+        chunks = new ByteBuffer[count];
+        for (var i = 0; i < count; ++i) {
+            var chunkSize = Math.min(bytes - ((long) i << CHUNK_SHIFT),
+                                     1L << CHUNK_SHIFT);
+            chunks[i] = ByteBuffer.allocateDirect((int) chunkSize)
+                    .order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Obtain the size of this block.
+     *
+     * @return size, in bytes.
+     */
+    long size() {
+        return size;
+    }
+
+    int getInt(long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)]
+                .getInt((int) (offset & CHUNK_MASK));
+    }
+
+    void putInt(long offset, int value) {
+        chunks[(int) (offset >>> CHUNK_SHIFT)]
+                .putInt((int) (offset & CHUNK_MASK), value);
+    }
+
+    long getLong(long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)]
+                .getLong((int) (offset & CHUNK_MASK));
+    }
+
+    void putLong(long offset, long value) {
+        chunks[(int) (offset >>> CHUNK_SHIFT)]
+                .putLong((int) (offset & CHUNK_MASK), value);
+    }
+
+    /**
+     * Release the native memory backing this block.
+     *
+     * The memory is released immediately where the JVM permits it, and
+     * otherwise when the underlying buffers are garbage collected.
+     *
+     * The block must not be accessed during or after closing, including
+     * from other threads, since the memory may already have been handed
+     * back to the operating system; callers are responsible for ensuring
+     * this. Closing an already closed block has no effect.
+     */
+    @Override
+    public void close() {
+        if (chunks == null)
+            return;
+
+        var toRelease = chunks;
+        chunks = null;
+        if (INVOKE_CLEANER == null)
+            return;
+
+        for (var chunk : toRelease) {
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, chunk);
+            } catch (ReflectiveOperationException e) {
+                return;
+            }
+        }
+    }
+}
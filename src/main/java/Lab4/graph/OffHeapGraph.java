@@ -0,0 +1,413 @@
+package Lab4.graph;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read-only graph with its adjacency information stored in native memory,
+ * outside of the Java heap. It is either copied from a {@link Graph}, or
+ * loaded directly from a file in CSV format.
+ *
+ * Nodes are identified by integer indices, assigned in the default name
+ * (string) sort order. Adjacency lists are stored back to back in a single
+ * array of node indices, addressed using long offsets so that the number of
+ * edges is not limited by the maximum size of a Java array. Neighbors are
+ * stored in the visitation order of the graph the copy was created from,
+ * or in file order when loaded from a file.
+ *
+ * Only the node names are kept on the heap, so heap usage and garbage
+ * collection time do not grow with the number of edges. The native memory
+ * used is instead limited by the JVM's direct memory limit
+ * ({@code -XX:MaxDirectMemorySize}), which defaults to the maximum heap size.
+ *
+ * The native memory is held until {@link #close()} is called, after which
+ * the graph may no longer be used. Until then, the graph is immutable and
+ * may be searched concurrently. Closing waits for searches and accesses in
+ * progress to finish, so the memory is never released while in use.
+ */
+public class OffHeapGraph implements AutoCloseable {
+    /**
+     * Names of the nodes, indexed by node index.
+     */
+    private final String[] names;
+    /**
+     * Offset of the first neighbor of each node within the adjacency array,
+     * followed by the total length of the adjacency array, as longs.
+     */
+    private final OffHeapBuffer offsets;
+    /**
+     * Adjacency lists of all nodes, as int node indices.
+     */
+    private final OffHeapBuffer adjacency;
+    /**
+     * Held for reading while the native memory is accessed, and for writing
+     * while it is released.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    /**
+     * Construct an off-heap copy of a graph.
+     *
+     * The adjacency lists pass through a temporary on-heap array on their
+     * way to native memory, so graphs with more adjacency entries than fit
+     * in a Java array must be loaded from a file instead.
+     *
+     * @param g graph to copy.
+     */
+    public OffHeapGraph(Graph g) {
+        var snapshot = new CompactGraph(g);
+        names = snapshot.names;
+        offsets = new OffHeapBuffer(((long) names.length + 1) * Long.BYTES);
+        adjacency = new OffHeapBuffer(
+                (long) snapshot.adjacency.length * Integer.BYTES);
+
+        for (var n = 0; n <= names.length; ++n)
+            offsets.putLong((long) n * Long.BYTES, snapshot.offsets[n]);
+        for (var i = 0; i < snapshot.adjacency.length; ++i)
+            adjacency.putInt((long) i * Integer.BYTES, snapshot.adjacency[i]);
+    }
+
+    /**
+     * Load a graph from a file in CSV format, as accepted by
+     * {@link Graph#Graph(java.io.Reader, java.util.function.Consumer)},
+     * without building an on-heap graph first.
+     *
+     * The file is read twice: once to collect node names and count the
+     * edges of each node, and once to fill in the adjacency lists. The
+     * resulting graph has the same nodes and edges, in the same visitation
+     * order, as a graph loaded from the file with no rearrangement.
+     *
+     * Space for repeated edges is only reclaimed once the adjacency lists
+     * are complete, so native memory usage is proportional to the number
+     * of edge entries in the file.
+     *
+     * @param csv path to the file, in UTF-8 encoding.
+     * @throws IOException on I/O error, or if the file is modified while
+     *                     being loaded.
+     * @throws IllegalArgumentException if the file contains an empty line.
+     */
+    public OffHeapGraph(Path csv) throws IOException {
+        /* first pass: node names and an upper bound on each degree */
+        var ids = new HashMap<String, Integer>();
+        var counts = new int[16];
+        try (var in = CSVParser.parse(
+                Files.newBufferedReader(csv, StandardCharsets.UTF_8),
+                CSVFormat.RFC4180)) {
+            for (var record : in) {
+                if (record.size() < 1)
+                    throw new IllegalArgumentException(String.format(
+                            "record %d: node unnamed / empty line.",
+                            in.getRecordNumber()));
+
+                for (var n : record) {
+                    if (ids.putIfAbsent(n, ids.size()) == null
+                            && ids.size() > counts.length)
+                        counts = Arrays.copyOf(counts, counts.length * 2);
+                }
+
+                /* each edge is added to the lists of both endpoints */
+                counts[ids.get(record.get(0))] += record.size() - 1;
+                for (var i = 1; i < record.size(); ++i)
+                    ++counts[ids.get(record.get(i))];
+            }
+        }
+
+        names = ids.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        var capacity = new int[names.length];
+        for (var n = 0; n < names.length; ++n)
+            capacity[n] = counts[ids.put(names[n], n)];
+
+        offsets = new OffHeapBuffer(((long) names.length + 1) * Long.BYTES);
+        var endpoints = 0L;
+        for (var n = 0; n < names.length; ++n) {
+            offsets.putLong((long) n * Long.BYTES, endpoints);
+            endpoints += capacity[n];
+        }
+        offsets.putLong((long) names.length * Long.BYTES, endpoints);
+        adjacency = new OffHeapBuffer(endpoints * Integer.BYTES);
+
+        try {
+            fill(csv, ids, capacity);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Obtain the number of edges in this graph.
+     *
+     * @return count of number of edges in this graph.
+     */
+    public long getEdgeCount() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            /* divide by two because we include each edge twice */
+            return offsets.getLong((long) names.length * Long.BYTES) / 2;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtain the number of nodes in this graph.
+     *
+     * @return count of number of nodes in this graph.
+     */
+    public int getNodeCount() {
+        return names.length;
+    }
+
+    /**
+     * Obtain the index of a node.
+     *
+     * @param name name of the node.
+     * @return index of the node, or a negative number if there is no node
+     *         with the given name in the graph.
+     */
+    public int indexOf(String name) {
+        return Arrays.binarySearch(names, name);
+    }
+
+    /**
+     * Obtain the name of a node.
+     *
+     * @param n index of the node.
+     * @return name of the node.
+     */
+    public String getName(int n) {
+        return names[n];
+    }
+
+    /**
+     * Obtain the count of neighbors a node has in its adjacency list.
+     *
+     * @param n index of the node.
+     * @return neighbor count.
+     */
+    public int getNeighborCount(int n) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return (int) (start(n + 1) - start(n));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtain a neighbor of a node.
+     *
+     * @param n index of the node.
+     * @param i position of the neighbor within the adjacency list of the node.
+     * @return index of the neighbor.
+     */
+    public int getNeighbor(int n, int i) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return adjacency.getInt((start(n) + i) * Integer.BYTES);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Performs a breadth first search on the graph, attempting the locate
+     * a node, and recovering the path to that node.
+     *
+     * The predecessor array must contain at least as many elements as there
+     * are nodes in the graph, and must be filled with {@code -1} before each
+     * search. On return, it maps the index of each visited node to the
+     * index of its predecessor, with the source node being its own
+     * predecessor. If the target node cannot be successfully located, its
+     * entry remains {@code -1}.
+     *
+     * The queue array must contain at least as many elements as there are
+     * nodes in the graph, and need not be cleared.
+     *
+     * As with {@link Graph#breadthFirstSearch(String, String,
+     * java.util.Map, java.util.Deque)}, these arrays are not allocated
+     * internally in order to isolate the cost of creating them from the
+     * search time.
+     *
+     * @param s index of source node to start BFS from.
+     * @param t index of target node to find.
+     * @param pred array used to store node predecessor information.
+     * @param queue array used to store nodes pending visitation.
+     * @throws IllegalArgumentException if the source or target node cannot
+     *                                  be found in the graph, or the arrays
+     *                                  are too small.
+     * @throws IllegalStateException if the graph has been closed.
+     */
+    public void breadthFirstSearch(int s, int t, int[] pred, int[] queue) {
+        breadthFirstSearch(s, t, pred, queue, null);
+    }
+
+    /**
+     * Performs a breadth first search on the graph, visiting the neighbors of
+     * each node in a randomized order.
+     *
+     * Neighbors are visited starting from a randomly chosen position in each
+     * adjacency list, as in {@link Graph#breadthFirstSearch(String, String,
+     * java.util.Map, java.util.Deque, Random)}. The same requirements on the
+     * arrays passed to {@link #breadthFirstSearch(int, int, int[], int[])}
+     * apply.
+     *
+     * @param s index of source node to start BFS from.
+     * @param t index of target node to find.
+     * @param pred array used to store node predecessor information.
+     * @param queue array used to store nodes pending visitation.
+     * @param rnd random source used to pick the starting position within
+     *            each adjacency list, or {@code null} to use the stored order.
+     * @throws IllegalArgumentException if the source or target node cannot
+     *                                  be found in the graph, or the arrays
+     *                                  are too small.
+     * @throws IllegalStateException if the graph has been closed.
+     */
+    public void breadthFirstSearch(int s, int t, int[] pred, int[] queue,
+                                   Random rnd) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            search(s, t, pred, queue, rnd);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Release the native memory holding the graph.
+     *
+     * Waits for searches and accesses in progress on other threads to
+     * finish. Closing an already closed graph has no effect.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed)
+                return;
+
+            closed = true;
+            offsets.close();
+            adjacency.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void search(int s, int t, int[] pred, int[] queue, Random rnd) {
+        if ((s < 0) || (s >= names.length) || (t < 0) || (t >= names.length))
+            throw new IllegalArgumentException(
+                    "source / target node not contained in graph.");
+        if ((pred.length < names.length) || (queue.length < names.length))
+            throw new IllegalArgumentException(
+                    "predecessor / queue array smaller than graph.");
+
+        var head = 0;
+        var tail = 0;
+        queue[tail++] = s;
+        pred[s] = s;
+        while (head < tail) {
+            var n = queue[head++];
+            var first = start(n);
+            var count = (int) (start(n + 1) - first);
+            if (count == 0)
+                continue;
+
+            var offset = (rnd == null) ? 0 : rnd.nextInt(count);
+            for (var i = 0; i < count; ++i) {
+                var idx = offset + i;
+                var neigh = adjacency.getInt(
+                        (first + (idx < count ? idx : idx - count))
+                                * Integer.BYTES);
+                if (pred[neigh] != -1)
+                    continue;
+
+                queue[tail++] = neigh;
+                pred[neigh] = n;
+                if (neigh == t)
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Second pass of loading from a file: append the edges of each record
+     * to the lists of both endpoints, then drop all but the first
+     * occurrence of each neighbor and close the resulting gaps.
+     */
+    private void fill(Path csv, HashMap<String, Integer> ids,
+                      int[] capacity) throws IOException {
+        var filled = new int[names.length];
+        try (var in = CSVParser.parse(
+                Files.newBufferedReader(csv, StandardCharsets.UTF_8),
+                CSVFormat.RFC4180)) {
+            for (var record : in) {
+                var node = indexOrFail(ids, record.get(0));
+                for (var i = 1; i < record.size(); ++i) {
+                    var neigh = indexOrFail(ids, record.get(i));
+                    append(node, neigh, filled, capacity);
+                    append(neigh, node, filled, capacity);
+                }
+            }
+        }
+
+        var seen = new int[names.length];
+        Arrays.fill(seen, -1);
+        var offset = 0L;
+        for (var n = 0; n < names.length; ++n) {
+            var first = start(n);
+            offsets.putLong((long) n * Long.BYTES, offset);
+            for (var i = 0; i < filled[n]; ++i) {
+                var neigh = adjacency.getInt((first + i) * Integer.BYTES);
+                if (seen[neigh] == n)
+                    continue;
+
+                seen[neigh] = n;
+                adjacency.putInt(offset * Integer.BYTES, neigh);
+                ++offset;
+            }
+        }
+        offsets.putLong((long) names.length * Long.BYTES, offset);
+    }
+
+    private void append(int n, int neigh, int[] filled, int[] capacity)
+            throws IOException {
+        if (filled[n] == capacity[n])
+            throw new IOException("file modified while loading graph.");
+
+        adjacency.putInt((start(n) + filled[n]++) * Integer.BYTES, neigh);
+    }
+
+    private static int indexOrFail(HashMap<String, Integer> ids,
+                                   String name) throws IOException {
+        var n = ids.get(name);
+        if (n == null)
+            throw new IOException("file modified while loading graph.");
+
+        return n;
+    }
+
+    private long start(int n) {
+        return offsets.getLong((long) n * Long.BYTES);
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("graph has been closed.");
+    }
+}
@@ -0,0 +1,209 @@
+package Lab4.graph.partition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Compact encoding of frontier batches exchanged between shards.
+ *
+ * A batch is a list of (node, predecessor) pairs. The pairs are sorted by
+ * node and deduplicated, and the nodes are then written either as a bitmap
+ * spanning the smallest and largest node, or as a list of variable-length
+ * gaps between consecutive nodes, whichever is smaller. Predecessors follow
+ * as variable-length differences from the previous predecessor.
+ */
+class FrontierCodec {
+    private static final int DELTA = 0;
+    private static final int BITMAP = 1;
+
+    private FrontierCodec() {
+    }
+
+    /**
+     * Encode a batch of (node, predecessor) pairs.
+     *
+     * Where a node appears more than once, the pair with the smallest
+     * predecessor is kept.
+     *
+     * @param nodes node indices. This array is not modified.
+     * @param preds predecessor indices, matched by position with the nodes.
+     * @param count number of pairs to encode.
+     * @return encoded batch.
+     */
+    static byte[] Encode(int[] nodes, int[] preds, int count) {
+        var out = new ByteArrayOutputStream();
+        try {
+            Encode(out, nodes, preds, count);
+        } catch (IOException e) {
+            /* not thrown when writing to memory */
+            throw new UncheckedIOException(e);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Encode a batch of (node, predecessor) pairs to an output stream.
+     *
+     * @param out output to write the batch to.
+     * @param nodes node indices. This array is not modified.
+     * @param preds predecessor indices, matched by position with the nodes.
+     * @param count number of pairs to encode.
+     * @throws IOException on I/O error.
+     * @see #Encode(int[], int[], int)
+     */
+    static void Encode(OutputStream out, int[] nodes, int[] preds,
+                       int count) throws IOException {
+        var pairs = new long[count];
+        for (var i = 0; i < count; ++i)
+            pairs[i] = ((long) nodes[i] << 32) | (preds[i] & 0xFFFFFFFFL);
+        Arrays.sort(pairs);
+
+        var unique = 0;
+        for (var i = 0; i < count; ++i) {
+            if ((unique > 0)
+                    && ((pairs[unique - 1] >>> 32) == (pairs[i] >>> 32)))
+                continue;
+            pairs[unique++] = pairs[i];
+        }
+
+        WriteVarInt(out, unique);
+        if (unique == 0)
+            return;
+
+        var first = (int) (pairs[0] >>> 32);
+        var last = (int) (pairs[unique - 1] >>> 32);
+        var span = last - first + 1;
+
+        var deltaSize = 0L;
+        for (var i = 1; i < unique; ++i)
+            deltaSize += VarIntSize(
+                    (int) (pairs[i] >>> 32) - (int) (pairs[i - 1] >>> 32));
+
+        WriteVarInt(out, first);
+        if (deltaSize <= (VarIntSize(span) + (span + 7L) / 8)) {
+            out.write(DELTA);
+            for (var i = 1; i < unique; ++i)
+                WriteVarInt(out, (int) (pairs[i] >>> 32)
+                        - (int) (pairs[i - 1] >>> 32));
+        } else {
+            out.write(BITMAP);
+            WriteVarInt(out, span);
+            var bitmap = new byte[(span + 7) / 8];
+            for (var i = 0; i < unique; ++i) {
+                var bit = (int) (pairs[i] >>> 32) - first;
+                bitmap[bit >>> 3] |= (byte) (1 << (bit & 7));
+            }
+            out.write(bitmap, 0, bitmap.length);
+        }
+
+        var prev = 0;
+        for (var i = 0; i < unique; ++i) {
+            var pred = (int) pairs[i];
+            WriteVarInt(out, ZigZag(pred - prev));
+            prev = pred;
+        }
+    }
+
+    /**
+     * Decode a batch of (node, predecessor) pairs.
+     *
+     * @param in input to read the batch from.
+     * @return two arrays, holding the nodes in ascending order and their
+     *         matching predecessors.
+     * @throws IOException on I/O error.
+     */
+    static int[][] Decode(DataInput in) throws IOException {
+        var count = ReadVarInt(in);
+        var nodes = new int[count];
+        var preds = new int[count];
+        if (count == 0)
+            return new int[][] { nodes, preds };
+
+        var first = ReadVarInt(in);
+        var mode = in.readUnsignedByte();
+        if (mode == DELTA) {
+            nodes[0] = first;
+            for (var i = 1; i < count; ++i)
+                nodes[i] = nodes[i - 1] + ReadVarInt(in);
+        } else if (mode == BITMAP) {
+            var span = ReadVarInt(in);
+            var bitmap = new byte[(span + 7) / 8];
+            in.readFully(bitmap);
+
+            var i = 0;
+            for (var bit = 0; bit < span; ++bit) {
+                if ((bitmap[bit >>> 3] & (1 << (bit & 7))) != 0)
+                    nodes[i++] = first + bit;
+            }
+        } else {
+            throw new IOException(String.format(
+                    "unknown frontier encoding %d.", mode));
+        }
+
+        var prev = 0;
+        for (var i = 0; i < count; ++i) {
+            prev += UnZigZag(ReadVarInt(in));
+            preds[i] = prev;
+        }
+
+        return new int[][] { nodes, preds };
+    }
+
+    /**
+     * Write a non-negative integer using as few bytes as possible: seven
+     * bits at a time, with the high bit of each byte set while more follow.
+     *
+     * @param out output to write the integer to.
+     * @param v integer to write.
+     * @throws IOException on I/O error.
+     */
+    static void WriteVarInt(OutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    /**
+     * Read an integer written by {@link #WriteVarInt(OutputStream, int)}.
+     *
+     * @param in input to read the integer from.
+     * @return integer read.
+     * @throws IOException on I/O error, or if the integer is malformed.
+     */
+    static int ReadVarInt(DataInput in) throws IOException {
+        var v = 0;
+        for (var shift = 0; shift < 32; shift += 7) {
+            var b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+        }
+
+        throw new IOException("malformed variable-length integer.");
+    }
+
+    private static int VarIntSize(int v) {
+        var size = 1;
+        while ((v & ~0x7F) != 0) {
+            ++size;
+            v >>>= 7;
+        }
+
+        return size;
+    }
+
+    private static int ZigZag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int UnZigZag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
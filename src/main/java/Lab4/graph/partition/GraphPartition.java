@@ -0,0 +1,336 @@
+package Lab4.graph.partition;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * Assignment of the nodes of a graph to a number of shards, each of which
+ * owns its nodes and their adjacency lists.
+ *
+ * The graph is streamed from a file in CSV format, as accepted by
+ * {@link Lab4.graph.Graph#Graph(java.io.Reader,
+ * java.util.function.Consumer)}, and is never held in memory as a whole:
+ * only node names are kept. Adjacency lists are written out to one file per
+ * shard by {@link #writeShards(Path)}, for each worker to load its own.
+ *
+ * Nodes are identified by integer indices, which encode their owning shard:
+ * the node with local index {@code i} within shard {@code k} has index
+ * {@code i * shards + k}. The owner of any node can thus be computed from
+ * its index alone, without a lookup table.
+ */
+public class GraphPartition {
+    private final Path csv;
+    private final int shards;
+    private final HashMap<String, Integer> ids;
+    /**
+     * Names of the nodes, indexed by node index. Indices not assigned to any
+     * node have no name.
+     */
+    private final String[] names;
+    private final int[] shardSizes;
+
+    private GraphPartition(Path csv, int shards, HashMap<String, Integer> ids,
+                           int[] shardSizes) {
+        this.csv = csv;
+        this.shards = shards;
+        this.ids = ids;
+        this.shardSizes = shardSizes;
+
+        var maxSize = Arrays.stream(shardSizes).max().orElse(0);
+        names = new String[maxSize * shards];
+        ids.forEach((name, n) -> names[n] = name);
+    }
+
+    /**
+     * Partition a graph by hashing node names.
+     *
+     * Shards receive roughly equal numbers of nodes, but almost all edges
+     * cross shards. The file is read once.
+     *
+     * @param csv path to the graph file, in UTF-8 encoding.
+     * @param shards number of shards.
+     * @return partitioned graph.
+     * @throws IOException on I/O error.
+     * @throws IllegalArgumentException if the shard count is not positive,
+     *                                  or the file contains an empty line.
+     */
+    public static GraphPartition Hash(Path csv, int shards) throws IOException {
+        CheckShards(shards);
+        var ids = new HashMap<String, Integer>();
+        var sizes = new int[shards];
+
+        ReadRecords(csv, record -> {
+            for (var n : record) {
+                if (ids.containsKey(n))
+                    continue;
+
+                var owner = (n.hashCode() & Integer.MAX_VALUE) % shards;
+                ids.put(n, sizes[owner]++ * shards + owner);
+            }
+        });
+
+        return new GraphPartition(csv, shards, ids, sizes);
+    }
+
+    /**
+     * Partition a graph using the linear deterministic greedy streaming
+     * edge-cut heuristic.
+     *
+     * Nodes are placed in the order their records appear in the file, each
+     * in the shard holding most of its already placed neighbors, weighted by
+     * how much room is left in that shard. Nodes without a record of their
+     * own are placed in the least loaded shards afterwards. Shards hold at
+     * most {@code ceil(nodes / shards)} nodes.
+     *
+     * The file is read twice, first to count the nodes.
+     *
+     * @param csv path to the graph file, in UTF-8 encoding.
+     * @param shards number of shards.
+     * @return partitioned graph.
+     * @throws IOException on I/O error.
+     * @throws IllegalArgumentException if the shard count is not positive,
+     *                                  or the file contains an empty line.
+     */
+    public static GraphPartition LinearDeterministicGreedy(
+            Path csv, int shards) throws IOException {
+        CheckShards(shards);
+        var order = new HashMap<String, Integer>();
+        var nodeNames = new ArrayList<String>();
+        ReadRecords(csv, record -> {
+            for (var n : record) {
+                if (order.putIfAbsent(n, nodeNames.size()) == null)
+                    nodeNames.add(n);
+            }
+        });
+
+        var nodeCount = nodeNames.size();
+        var capacity = (nodeCount + shards - 1) / shards;
+        var owner = new int[nodeCount];
+        Arrays.fill(owner, -1);
+        var load = new int[shards];
+        var score = new int[shards];
+
+        ReadRecords(csv, record -> {
+            /* nodes with several records are placed at the first one */
+            var n = order.get(record.get(0));
+            if ((n == null) || (owner[n] >= 0))
+                return;
+
+            Arrays.fill(score, 0);
+            for (var i = 1; i < record.size(); ++i) {
+                var neigh = order.get(record.get(i));
+                if ((neigh != null) && (owner[neigh] >= 0))
+                    ++score[owner[neigh]];
+            }
+
+            var best = -1;
+            var bestWeight = -1.0;
+            for (var k = 0; k < shards; ++k) {
+                if (load[k] >= capacity)
+                    continue;
+
+                var weight = score[k] * (1.0 - (double) load[k] / capacity);
+                if ((weight > bestWeight)
+                        || ((weight == bestWeight)
+                            && (load[k] < load[best]))) {
+                    best = k;
+                    bestWeight = weight;
+                }
+            }
+
+            owner[n] = best;
+            ++load[best];
+        });
+
+        var ids = new HashMap<String, Integer>();
+        var sizes = new int[shards];
+        for (var n = 0; n < nodeCount; ++n) {
+            if (owner[n] < 0) {
+                var least = 0;
+                for (var k = 1; k < shards; ++k) {
+                    if (load[k] < load[least])
+                        least = k;
+                }
+                owner[n] = least;
+                ++load[least];
+            }
+
+            ids.put(nodeNames.get(n), sizes[owner[n]]++ * shards + owner[n]);
+        }
+
+        return new GraphPartition(csv, shards, ids, sizes);
+    }
+
+    /**
+     * Obtain the number of shards.
+     *
+     * @return shard count.
+     */
+    public int getShardCount() {
+        return shards;
+    }
+
+    /**
+     * Obtain the number of nodes in the partitioned graph.
+     *
+     * @return node count.
+     */
+    public int getNodeCount() {
+        return ids.size();
+    }
+
+    /**
+     * Obtain the index of a node.
+     *
+     * @param name name of the node.
+     * @return index of the node, or a negative number if there is no node
+     *         with the given name in the graph.
+     */
+    public int indexOf(String name) {
+        return ids.getOrDefault(name, -1);
+    }
+
+    /**
+     * Obtain the name of a node.
+     *
+     * @param n index of the node.
+     * @return name of the node.
+     */
+    public String getName(int n) {
+        return names[n];
+    }
+
+    /**
+     * Obtain the shard owning a node.
+     *
+     * @param n index of the node.
+     * @return index of the owning shard.
+     */
+    public int getOwner(int n) {
+        return n % shards;
+    }
+
+    /**
+     * Obtain the number of nodes owned by a shard.
+     *
+     * @param shard index of the shard.
+     * @return count of nodes owned.
+     */
+    public int getShardSize(int shard) {
+        return shardSizes[shard];
+    }
+
+    /**
+     * Write the adjacency lists owned by each shard to a separate file,
+     * reading the graph file once more.
+     *
+     * Each shard file starts with the shard count, the index of the shard
+     * and the number of nodes it owns. For every edge in the graph file, in
+     * file order, it then holds a (local index + 1, neighbor index) pair of
+     * variable-length integers for each endpoint owned by the shard, and
+     * ends with a zero. Repeated edges are left for the reader to drop.
+     *
+     * @param directory directory to create the shard files in.
+     * @return paths of the shard files, indexed by shard.
+     * @throws IOException on I/O error, or if the file is modified after
+     *                     being partitioned.
+     */
+    Path[] writeShards(Path directory) throws IOException {
+        var files = new Path[shards];
+        var out = new DataOutputStream[shards];
+        try {
+            for (var k = 0; k < shards; ++k) {
+                files[k] = directory.resolve(ShardFileName(k));
+                out[k] = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(files[k])));
+                FrontierCodec.WriteVarInt(out[k], shards);
+                FrontierCodec.WriteVarInt(out[k], k);
+                FrontierCodec.WriteVarInt(out[k], shardSizes[k]);
+            }
+
+            try (var in = Open(csv)) {
+                for (var record : in) {
+                    var n = indexOrFail(record.get(0));
+                    for (var i = 1; i < record.size(); ++i) {
+                        var neigh = indexOrFail(record.get(i));
+                        writeEndpoint(out[getOwner(n)], n, neigh);
+                        writeEndpoint(out[getOwner(neigh)], neigh, n);
+                    }
+                }
+            }
+
+            for (var stream : out)
+                stream.write(0);
+        } finally {
+            for (var stream : out) {
+                if (stream != null)
+                    stream.close();
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Obtain the name of the file holding a shard, within the directory
+     * passed to {@link #writeShards(Path)}.
+     *
+     * @param shard index of the shard.
+     * @return file name.
+     */
+    static String ShardFileName(int shard) {
+        return String.format("shard-%d.bin", shard);
+    }
+
+    private void writeEndpoint(DataOutputStream out, int n,
+                               int neigh) throws IOException {
+        FrontierCodec.WriteVarInt(out, n / shards + 1);
+        FrontierCodec.WriteVarInt(out, neigh);
+    }
+
+    private int indexOrFail(String name) throws IOException {
+        var n = ids.get(name);
+        if (n == null)
+            throw new IOException("file modified while partitioning graph.");
+
+        return n;
+    }
+
+    private static void CheckShards(int shards) {
+        if (shards <= 0)
+            throw new IllegalArgumentException(
+                    "shard count must be positive.");
+    }
+
+    private static CSVParser Open(Path csv) throws IOException {
+        return CSVParser.parse(
+                Files.newBufferedReader(csv, StandardCharsets.UTF_8),
+                CSVFormat.RFC4180);
+    }
+
+    private static void ReadRecords(Path csv, Consumer<CSVRecord> action)
+            throws IOException {
+        try (var in = Open(csv)) {
+            for (var record : in) {
+                if (record.size() < 1)
+                    throw new IllegalArgumentException(String.format(
+                            "record %d: node unnamed / empty line.",
+                            in.getRecordNumber()));
+
+                action.accept(record);
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package Lab4.graph.partition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Worker process holding a single shard of a partitioned graph, and
+ * performing its part of a level-synchronous breadth first search on
+ * behalf of a {@link ShardedSearch}.
+ *
+ * The worker connects to the coordinating process on startup, loads its
+ * shard from a file written by {@link GraphPartition#writeShards}, reports
+ * how many of its edges cross to other shards, and then serves commands
+ * until told to stop. Nodes owned by this shard are expanded locally. Edges
+ * leading to nodes owned by other shards produce (node, predecessor) pairs,
+ * which are sent to their owners through the coordinating process in
+ * compressed batches once per level. Nodes in these pairs are given by
+ * their local index within the owning shard, and predecessors by their
+ * (global) node index.
+ *
+ * Usage: {@code ShardWorker <host> <port> <shard index> <shard file>}
+ */
+public class ShardWorker {
+    static final int START = 2;
+    static final int EXPAND = 3;
+    static final int DELIVER = 4;
+    static final int PRED = 5;
+    static final int STOP = 6;
+
+    private final int shard;
+    private int shards;
+    /**
+     * Offset of the first neighbor of each owned node, by local index,
+     * within the adjacency array, followed by the total length of the
+     * adjacency array.
+     */
+    private int[] offsets;
+    /**
+     * Adjacency lists of owned nodes. Neighbors owned by this shard are
+     * stored as their local index, and others as {@code -(index + 1)},
+     * where {@code index} is their (global) node index.
+     */
+    private int[] adjacency;
+    private long cutEdges;
+    /**
+     * Predecessor of each owned node, by local index, as a (global) node
+     * index, or -1 if the node has not been visited.
+     */
+    private int[] pred;
+
+    private int[] frontier;
+    private int frontierSize;
+    private int[] next;
+    private int nextSize;
+    private int target;
+
+    private int[][] outNodes;
+    private int[][] outPreds;
+    private int[] outCount;
+
+    private ShardWorker(int shard) {
+        this.shard = shard;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: ShardWorker <host> <port> <shard> " +
+                    "<shard file>");
+            System.exit(1);
+        }
+
+        var shard = Integer.parseInt(args[2]);
+        try (var socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            socket.setTcpNoDelay(true);
+            var in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            var out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+
+            out.writeInt(shard);
+            out.flush();
+
+            var worker = new ShardWorker(shard);
+            try (var file = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(Paths.get(args[3]))))) {
+                worker.load(file);
+            }
+            out.writeLong(worker.cutEdges);
+            out.flush();
+            worker.serve(in, out);
+        }
+    }
+
+    private void serve(DataInputStream in,
+                       DataOutputStream out) throws IOException {
+        while (true) {
+            var command = in.readUnsignedByte();
+            switch (command) {
+                case START:
+                    start(in.readInt(), in.readInt());
+                    break;
+                case EXPAND:
+                    expand(out);
+                    break;
+                case DELIVER:
+                    deliver(in, out);
+                    break;
+                case PRED:
+                    var n = in.readInt();
+                    out.writeInt(isOwned(n) ? pred[n / shards] : -1);
+                    out.flush();
+                    break;
+                case STOP:
+                    return;
+                default:
+                    throw new IllegalStateException(String.format(
+                            "unknown command %d.", command));
+            }
+        }
+    }
+
+    /**
+     * Load the adjacency lists of this shard from (local index, neighbor)
+     * pairs in file order, keeping the first occurrence of each neighbor.
+     */
+    private void load(DataInputStream in) throws IOException {
+        shards = FrontierCodec.ReadVarInt(in);
+        if (FrontierCodec.ReadVarInt(in) != shard)
+            throw new IOException("shard file belongs to another shard.");
+
+        var nodeCount = FrontierCodec.ReadVarInt(in);
+        var from = new int[16];
+        var to = new int[16];
+        var count = 0;
+        for (var local = FrontierCodec.ReadVarInt(in) - 1; local >= 0;
+             local = FrontierCodec.ReadVarInt(in) - 1) {
+            if (local >= nodeCount)
+                throw new IOException("malformed shard file.");
+            if (count == from.length) {
+                from = Arrays.copyOf(from, count * 2);
+                to = Arrays.copyOf(to, count * 2);
+            }
+
+            from[count] = local;
+            to[count++] = FrontierCodec.ReadVarInt(in);
+        }
+
+        /* group the pairs by node, keeping their order */
+        offsets = new int[nodeCount + 1];
+        for (var i = 0; i < count; ++i)
+            ++offsets[from[i] + 1];
+        for (var n = 0; n < nodeCount; ++n)
+            offsets[n + 1] += offsets[n];
+
+        var fill = Arrays.copyOf(offsets, nodeCount);
+        var grouped = new int[count];
+        for (var i = 0; i < count; ++i)
+            grouped[fill[from[i]]++] = to[i];
+
+        pred = new int[nodeCount];
+        adjacency = new int[count];
+        var offset = 0;
+        var seen = new HashSet<Integer>();
+        for (var n = 0; n < nodeCount; ++n) {
+            var first = offsets[n];
+            offsets[n] = offset;
+            seen.clear();
+            for (var i = first; i < fill[n]; ++i) {
+                var v = grouped[i];
+                if (!seen.add(v))
+                    continue;
+
+                if (isOwned(v)) {
+                    adjacency[offset++] = v / shards;
+                } else {
+                    adjacency[offset++] = -(v + 1);
+                    ++cutEdges;
+                }
+            }
+        }
+        offsets[nodeCount] = offset;
+        adjacency = Arrays.copyOf(adjacency, offset);
+
+        frontier = new int[nodeCount];
+        next = new int[nodeCount];
+        outNodes = new int[shards][16];
+        outPreds = new int[shards][16];
+        outCount = new int[shards];
+    }
+
+    private void start(int s, int t) {
+        Arrays.fill(pred, -1);
+        frontierSize = 0;
+        target = t;
+
+        if (isOwned(s)) {
+            pred[s / shards] = s;
+            frontier[frontierSize++] = s / shards;
+        }
+    }
+
+    /**
+     * Expand the current frontier, visiting owned neighbors directly and
+     * sending the rest to the coordinating process, one batch per
+     * destination shard.
+     */
+    private void expand(DataOutputStream out) throws IOException {
+        nextSize = 0;
+        Arrays.fill(outCount, 0);
+
+        for (var f = 0; f < frontierSize; ++f) {
+            var u = frontier[f];
+            var global = u * shards + shard;
+            for (var i = offsets[u]; i < offsets[u + 1]; ++i) {
+                var v = adjacency[i];
+                if (v >= 0) {
+                    visit(v, global);
+                } else {
+                    v = -(v + 1);
+                    queueRemote(v % shards, v / shards, global);
+                }
+            }
+        }
+
+        for (var k = 0; k < shards; ++k) {
+            if (outCount[k] == 0) {
+                out.writeInt(0);
+                continue;
+            }
+
+            var batch = FrontierCodec.Encode(outNodes[k], outPreds[k],
+                                             outCount[k]);
+            out.writeInt(batch.length);
+            out.write(batch);
+        }
+        out.flush();
+    }
+
+    /**
+     * Visit nodes sent from other shards, and advance to the next level.
+     */
+    private void deliver(DataInputStream in,
+                         DataOutputStream out) throws IOException {
+        var batches = in.readInt();
+        for (var b = 0; b < batches; ++b) {
+            in.readInt();
+            var pairs = FrontierCodec.Decode(in);
+            for (var i = 0; i < pairs[0].length; ++i) {
+                if ((pairs[0][i] < 0) || (pairs[0][i] >= pred.length))
+                    throw new IOException("node not owned by this shard.");
+
+                visit(pairs[0][i], pairs[1][i]);
+            }
+        }
+
+        var swap = frontier;
+        frontier = next;
+        next = swap;
+        frontierSize = nextSize;
+
+        out.writeInt(frontierSize);
+        out.writeBoolean(isOwned(target) && (pred[target / shards] != -1));
+        out.flush();
+    }
+
+    /**
+     * Check whether a node is owned by this shard.
+     *
+     * @param n (global) index of the node.
+     * @return whether the node is owned.
+     */
+    private boolean isOwned(int n) {
+        return (n >= 0) && (n % shards == shard) && (n / shards < pred.length);
+    }
+
+    private void visit(int n, int p) {
+        if (pred[n] != -1)
+            return;
+
+        pred[n] = p;
+        next[nextSize++] = n;
+    }
+
+    private void queueRemote(int shard, int v, int p) {
+        var count = outCount[shard];
+        if (count == outNodes[shard].length) {
+            outNodes[shard] = Arrays.copyOf(outNodes[shard], count * 2);
+            outPreds[shard] = Arrays.copyOf(outPreds[shard], count * 2);
+        }
+
+        outNodes[shard][count] = v;
+        outPreds[shard][count] = p;
+        outCount[shard] = count + 1;
+    }
+}
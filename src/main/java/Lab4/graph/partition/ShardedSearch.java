@@ -0,0 +1,363 @@
+package Lab4.graph.partition;
+
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.CountingOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Level-synchronous breadth first search over a partitioned graph, with each
+ * shard held by a separate local worker JVM ({@link ShardWorker}).
+ *
+ * Workers are started upon construction, each loading its shard from a file
+ * written to a temporary directory, which is deleted again on closing.
+ * Shards are never sent over the sockets, and the partitioned graph is never
+ * held in memory as a whole by any process.
+ *
+ * Workers communicate with this (coordinating) process over loopback
+ * sockets. For each level of the search, every worker expands its part of
+ * the frontier and sends the nodes it reached in other shards back in
+ * compressed batches, which are relayed to the owning workers without being
+ * decoded. The search ends once the target node has been reached, or no
+ * worker has any nodes left in its frontier.
+ *
+ * Predecessor information is kept by the owning workers, and is only
+ * collected along the path to the target node.
+ *
+ * The number of bytes exchanged with the workers is recorded per level.
+ *
+ * Instances are not safe for concurrent use.
+ */
+public class ShardedSearch implements AutoCloseable {
+    /**
+     * Time allowed for all workers to connect, in milliseconds.
+     */
+    private static final int CONNECT_TIMEOUT_MS = 60000;
+    /**
+     * Time allowed for each worker to exit when closing, in milliseconds.
+     */
+    private static final int EXIT_TIMEOUT_MS = 5000;
+
+    private final GraphPartition partition;
+    private final Path shardDirectory;
+    private final Process[] workers;
+    private final Socket[] sockets;
+    private final CountingInputStream[] inCounts;
+    private final CountingOutputStream[] outCounts;
+    private final DataInputStream[] in;
+    private final DataOutputStream[] out;
+
+    private final List<Long> levelBytes = new ArrayList<>();
+    private long setupBytes;
+    private long edgeCut;
+
+    /**
+     * Start one worker per shard of a partitioned graph, using the JVM
+     * running this process.
+     *
+     * @param p partitioned graph.
+     * @throws IOException if the shard files cannot be written, or the
+     *                     workers cannot be started or loaded.
+     */
+    public ShardedSearch(GraphPartition p) throws IOException {
+        this(p, Collections.emptyList());
+    }
+
+    /**
+     * Start one worker per shard of a partitioned graph, using the JVM
+     * running this process.
+     *
+     * @param p partitioned graph.
+     * @param workerJvmArgs additional arguments passed to each worker JVM,
+     *                      such as heap size options.
+     * @throws IOException if the shard files cannot be written, or the
+     *                     workers cannot be started or loaded.
+     */
+    public ShardedSearch(GraphPartition p,
+                         List<String> workerJvmArgs) throws IOException {
+        partition = p;
+        var shards = p.getShardCount();
+        workers = new Process[shards];
+        sockets = new Socket[shards];
+        inCounts = new CountingInputStream[shards];
+        outCounts = new CountingOutputStream[shards];
+        in = new DataInputStream[shards];
+        out = new DataOutputStream[shards];
+        shardDirectory = Files.createTempDirectory("shards");
+
+        try {
+            connect(p.writeShards(shardDirectory), workerJvmArgs);
+
+            /* each worker reports its cut edges once its shard is loaded */
+            var cutEndpoints = 0L;
+            for (var k = 0; k < shards; ++k)
+                cutEndpoints += in[k].readLong();
+            /* divide by two because we include each edge twice */
+            edgeCut = cutEndpoints / 2;
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+
+        setupBytes = totalBytes();
+    }
+
+    /**
+     * Obtain the number of edges whose endpoints are owned by
+     * different shards.
+     *
+     * @return count of cut edges.
+     */
+    public long getEdgeCut() {
+        return edgeCut;
+    }
+
+    /**
+     * Obtain the number of bytes exchanged with the workers while starting
+     * them, excluding the shard files they load.
+     *
+     * @return bytes exchanged.
+     */
+    public long getSetupBytes() {
+        return setupBytes;
+    }
+
+    /**
+     * Obtain the number of bytes exchanged with the workers during each
+     * level of the last search.
+     *
+     * This list is immutable.
+     *
+     * @return bytes exchanged per level, in level order.
+     */
+    public List<Long> getLevelBytes() {
+        return Collections.unmodifiableList(levelBytes);
+    }
+
+    /**
+     * Performs a breadth first search on the partitioned graph, attempting
+     * to locate a node, and recovering the path to that node.
+     *
+     * @param s name of source node to start BFS from.
+     * @param t name of target node to find.
+     * @return List containing names of nodes that must be traversed
+     *         (including the source node and target nodes) in order
+     *         to reach the target node while transitioning through the lowest
+     *         number of edges, or an empty list if there is no path.
+     * @throws IllegalArgumentException if the source or target node cannot
+     *                                  be found in the graph.
+     * @throws IOException on communication error with the workers.
+     */
+    public List<String> breadthFirstSearch(String s,
+                                           String t) throws IOException {
+        var source = partition.indexOf(s);
+        var target = partition.indexOf(t);
+        if ((source < 0) || (target < 0))
+            throw new IllegalArgumentException(
+                    "source / target node not contained in graph.");
+
+        levelBytes.clear();
+        var shards = workers.length;
+        var before = totalBytes();
+        for (var k = 0; k < shards; ++k) {
+            out[k].writeByte(ShardWorker.START);
+            out[k].writeInt(source);
+            out[k].writeInt(target);
+        }
+
+        var found = (source == target);
+        var frontier = 1L;
+        var batches = new byte[shards][shards][];
+        while ((!found) && (frontier > 0)) {
+            for (var k = 0; k < shards; ++k) {
+                out[k].writeByte(ShardWorker.EXPAND);
+                out[k].flush();
+            }
+
+            for (var k = 0; k < shards; ++k) {
+                for (var dest = 0; dest < shards; ++dest) {
+                    var batch = new byte[in[k].readInt()];
+                    in[k].readFully(batch);
+                    batches[dest][k] = batch;
+                }
+            }
+
+            for (var dest = 0; dest < shards; ++dest) {
+                var nonEmpty = 0;
+                for (var batch : batches[dest])
+                    nonEmpty += (batch.length > 0) ? 1 : 0;
+
+                out[dest].writeByte(ShardWorker.DELIVER);
+                out[dest].writeInt(nonEmpty);
+                for (var batch : batches[dest]) {
+                    if (batch.length == 0)
+                        continue;
+
+                    out[dest].writeInt(batch.length);
+                    out[dest].write(batch);
+                }
+                out[dest].flush();
+            }
+
+            frontier = 0;
+            for (var k = 0; k < shards; ++k) {
+                frontier += in[k].readInt();
+                found |= in[k].readBoolean();
+            }
+
+            var after = totalBytes();
+            levelBytes.add(after - before);
+            before = after;
+        }
+
+        if (!found)
+            return Collections.emptyList();
+
+        var path = new ArrayList<String>();
+        var n = target;
+        path.add(partition.getName(n));
+        while (n != source) {
+            var k = partition.getOwner(n);
+            out[k].writeByte(ShardWorker.PRED);
+            out[k].writeInt(n);
+            out[k].flush();
+            n = in[k].readInt();
+            if ((n < 0) || (path.size() > partition.getNodeCount()))
+                throw new IllegalStateException(
+                        "worker returned an invalid predecessor.");
+
+            path.add(partition.getName(n));
+        }
+        Collections.reverse(path);
+
+        return path;
+    }
+
+    /**
+     * Stop all workers, release the connections to them and delete the
+     * shard files.
+     *
+     * Workers that do not exit in time are forcibly terminated.
+     */
+    @Override
+    public void close() {
+        for (var k = 0; k < workers.length; ++k) {
+            try {
+                if (out[k] != null) {
+                    out[k].writeByte(ShardWorker.STOP);
+                    out[k].flush();
+                }
+            } catch (IOException e) {
+                /* the worker is terminated below if it is still running */
+            }
+
+            try {
+                if (sockets[k] != null)
+                    sockets[k].close();
+            } catch (IOException e) {
+                /* nothing more can be done with the connection */
+            }
+        }
+
+        for (var worker : workers) {
+            if (worker == null)
+                continue;
+
+            try {
+                if (!worker.waitFor(EXIT_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                    worker.destroyForcibly();
+            } catch (InterruptedException e) {
+                worker.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        for (var k = 0; k < workers.length; ++k) {
+            try {
+                Files.deleteIfExists(shardDirectory.resolve(
+                        GraphPartition.ShardFileName(k)));
+            } catch (IOException e) {
+                /* left for the operating system to clean up */
+            }
+        }
+        try {
+            Files.deleteIfExists(shardDirectory);
+        } catch (IOException e) {
+            /* left for the operating system to clean up */
+        }
+    }
+
+    private void connect(Path[] shardFiles,
+                         List<String> workerJvmArgs) throws IOException {
+        var shards = workers.length;
+        var java = Paths.get(System.getProperty("java.home"), "bin", "java");
+
+        try (var server = new ServerSocket(0, shards,
+                                           InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(CONNECT_TIMEOUT_MS);
+
+            for (var k = 0; k < shards; ++k) {
+                var command = new ArrayList<String>();
+                command.add(java.toString());
+                command.addAll(workerJvmArgs);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(ShardWorker.class.getName());
+                command.add(server.getInetAddress().getHostAddress());
+                command.add(Integer.toString(server.getLocalPort()));
+                command.add(Integer.toString(k));
+                command.add(shardFiles[k].toString());
+
+                workers[k] = new ProcessBuilder(command)
+                        .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+            }
+
+            for (var i = 0; i < shards; ++i) {
+                var socket = server.accept();
+                socket.setTcpNoDelay(true);
+                var inCount = new CountingInputStream(socket.getInputStream());
+                var dataIn = new DataInputStream(
+                        new BufferedInputStream(inCount));
+
+                var k = dataIn.readInt();
+                if ((k < 0) || (k >= shards) || (sockets[k] != null)) {
+                    socket.close();
+                    throw new IOException(String.format(
+                            "unexpected connection from shard %d.", k));
+                }
+
+                sockets[k] = socket;
+                inCounts[k] = inCount;
+                in[k] = dataIn;
+                outCounts[k] = new CountingOutputStream(
+                        socket.getOutputStream());
+                out[k] = new DataOutputStream(
+                        new BufferedOutputStream(outCounts[k]));
+            }
+        }
+    }
+
+    private long totalBytes() {
+        var total = 0L;
+        for (var k = 0; k < workers.length; ++k)
+            total += inCounts[k].getCount() + outCounts[k].getCount();
+
+        return total;
+    }
+}
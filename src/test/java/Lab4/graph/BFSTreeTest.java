@@ -0,0 +1,122 @@
+package Lab4.graph;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+
+import static Lab4.graph.TestGraphs.loadAirports;
+import static Lab4.graph.TestGraphs.neighborNames;
+import static org.junit.Assert.*;
+
+public class BFSTreeTest {
+    /*
+     * Once A is removed, Y can be reached through P or Q. Y lists Q first,
+     * but a fresh search dequeues P first and makes it the predecessor.
+     */
+    private static final String SMALL_GRAPH = "S,A,P,Q\r\nA,Y\r\nY,Q,P\r\n";
+
+    static void assertMatchesFreshTree(Graph g, BFSTree tree) {
+        var fresh = new BFSTree(g, tree.getSource());
+        assertEquals(fresh.getDistances(), tree.getDistances());
+        assertEquals(fresh.getPredecessors(), tree.getPredecessors());
+    }
+
+    @Test
+    public void repairChoosesPredecessorsInSearchOrder() throws IOException {
+        var g = new Graph(new StringReader(SMALL_GRAPH), x -> {});
+        var tree = new BFSTree(g, "S", 1.0);
+        assertEquals("A", tree.getPredecessors().get("Y"));
+
+        var removed = g.remove("A");
+        tree.remove(removed, "A");
+
+        assertFalse(tree.wasLastUpdateFull());
+        assertEquals("P", tree.getPredecessors().get("Y"));
+        assertMatchesFreshTree(removed, tree);
+    }
+
+    @Test
+    public void repairOfDeeperNodesMatchesFreshTree() throws IOException {
+        var g = new Graph(new StringReader(
+                "S,A,X\r\nX,B\r\nA,C\r\nB,C,D\r\nC,E\r\nD,E\r\n"),
+                x -> {});
+        var tree = new BFSTree(g, "S", 1.0);
+        var removed = g.remove("A");
+        tree.remove(removed, "A");
+
+        assertFalse(tree.wasLastUpdateFull());
+        assertEquals(Integer.valueOf(4), tree.getDistances().get("E"));
+        assertEquals("C", tree.getPredecessors().get("E"));
+        assertMatchesFreshTree(removed, tree);
+    }
+
+    @Test
+    public void repeatedRepairsMatchFreshSearch() throws IOException {
+        var g = loadAirports();
+        var rng = new Random(42);
+        var tree = new BFSTree(g, "AER", 1.0);
+        var names = new ArrayList<>(g.getNames());
+        names.remove("AER");
+        Collections.shuffle(names, rng);
+
+        for (var round = 0; round < 20; ++round) {
+            var batch = names.subList(0, 1 + rng.nextInt(20));
+            var toRemove = batch.toArray(new String[0]);
+            batch.clear();
+
+            g = g.remove(toRemove);
+            tree.remove(g, toRemove);
+            assertMatchesFreshTree(g, tree);
+
+            /* paths match those found by a plain search as well */
+            var pred = new HashMap<String, String>();
+            g.breadthFirstSearch("AER", "YYZ", pred, new ArrayDeque<>());
+            if (pred.containsKey("YYZ"))
+                assertEquals(
+                        Helpers.BFSPathExtract("AER", "YYZ", pred),
+                        Helpers.BFSPathExtract("AER", "YYZ",
+                                               tree.getPredecessors()));
+        }
+    }
+
+    @Test
+    public void costlyRepairFallsBackToRecomputation() throws IOException {
+        var g = loadAirports();
+        var tree = new BFSTree(g, "AER");
+        var fullWork = tree.getLastUpdateWork();
+
+        /* a leaf of the tree affects no other nodes */
+        var leaf = g.getNames().stream()
+                .filter(n -> !tree.getPredecessors().containsValue(n))
+                .findFirst().get();
+        var removed = g.remove(leaf);
+        tree.remove(removed, leaf);
+        assertFalse(tree.wasLastUpdateFull());
+        assertMatchesFreshTree(removed, tree);
+
+        /* every node but the source is a descendant of its neighbors */
+        var neighbors = neighborNames(removed, "AER")
+                .toArray(new String[0]);
+        var isolated = removed.remove(neighbors);
+        tree.remove(isolated, neighbors);
+        assertTrue(tree.wasLastUpdateFull());
+        assertMatchesFreshTree(isolated, tree);
+
+        /* deciding to recompute costs at most the given fraction */
+        var freshWork = new BFSTree(isolated, "AER").getLastUpdateWork();
+        assertTrue(tree.getLastUpdateWork() - freshWork
+                   <= BFSTree.DEFAULT_RECOMPUTE_FRACTION * fullWork + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void removingSourceFails() throws IOException {
+        var g = new Graph(new StringReader(SMALL_GRAPH), x -> {});
+        new BFSTree(g, "S").remove(g.remove("S"), "S");
+    }
+}
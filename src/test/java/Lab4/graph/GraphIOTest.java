@@ -0,0 +1,116 @@
+package Lab4.graph;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashSet;
+
+import static Lab4.graph.TestGraphs.loadAirports;
+import static Lab4.graph.TestGraphs.neighborNames;
+import static org.junit.Assert.*;
+
+public class GraphIOTest {
+    private static final String SMALL_GRAPH =
+            "A,B,C\r\nB,A,\"D,E\"\r\nC,A\r\n\"D,E\",B\r\nF\r\n";
+
+    static void assertSameStructure(Graph expected, Graph actual) {
+        assertEquals(expected.getNames(), actual.getNames());
+        assertEquals(expected.getEdgeCount(), actual.getEdgeCount());
+        for (var name : expected.getNames())
+            assertEquals(name, new HashSet<>(neighborNames(expected, name)),
+                         new HashSet<>(neighborNames(actual, name)));
+    }
+
+    @Test
+    public void csvRoundTripPreservesStructure() throws IOException {
+        var g = new Graph(new StringReader(SMALL_GRAPH), x -> {});
+        var w = new StringWriter();
+        GraphIO.WriteCSV(g, w);
+
+        assertSameStructure(g, new Graph(new StringReader(w.toString()),
+                                         x -> {}));
+    }
+
+    @Test
+    public void csvRoundTripOfAirportsPreservesStructure() throws IOException {
+        var g = loadAirports();
+        var w = new StringWriter();
+        GraphIO.WriteCSV(g, w);
+
+        assertSameStructure(g, new Graph(new StringReader(w.toString()),
+                                         x -> {}));
+    }
+
+    @Test
+    public void csvSubgraphExportMatchesRemoval() throws IOException {
+        var g = new Graph(new StringReader(SMALL_GRAPH), x -> {});
+        var w = new StringWriter();
+        GraphIO.WriteCSV(g, w, name -> !name.equals("B"));
+
+        assertSameStructure(g.remove("B"),
+                new Graph(new StringReader(w.toString()), x -> {}));
+    }
+
+    @Test
+    public void graphMLRoundTripOfAirportsPreservesStructure()
+            throws IOException {
+        var g = loadAirports();
+        var w = new StringWriter();
+        GraphIO.WriteGraphML(g, w);
+
+        assertSameStructure(g,
+                GraphIO.ReadGraphML(new StringReader(w.toString())));
+    }
+
+    @Test
+    public void graphMLSubgraphExportMatchesRemoval() throws IOException {
+        var g = new Graph(new StringReader(SMALL_GRAPH), x -> {});
+        var w = new StringWriter();
+        GraphIO.WriteGraphML(g, w, name -> !name.equals("A"));
+
+        assertSameStructure(g.remove("A"),
+                GraphIO.ReadGraphML(new StringReader(w.toString())));
+    }
+
+    @Test(expected = IOException.class)
+    public void graphMLExternalEntitiesAreNotResolved() throws IOException {
+        var doc = "<?xml version=\"1.0\"?>" +
+                "<!DOCTYPE graphml " +
+                "[<!ENTITY x SYSTEM \"file:///etc/hosts\">]>" +
+                "<graphml><graph><node id=\"&x;\"/></graph></graphml>";
+
+        GraphIO.ReadGraphML(new StringReader(doc));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void graphMLEdgeWithoutSourceIsRejected() throws IOException {
+        var doc = "<graphml><graph><node id=\"A\"/>" +
+                "<edge target=\"A\"/></graph></graphml>";
+
+        GraphIO.ReadGraphML(new StringReader(doc));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void graphMLEdgeWithoutTargetIsRejected() throws IOException {
+        var doc = "<graphml><graph><node id=\"A\"/>" +
+                "<edge source=\"A\"/></graph></graphml>";
+
+        GraphIO.ReadGraphML(new StringReader(doc));
+    }
+
+    @Test
+    public void dotEscapesOnlyDoubleQuotes() throws IOException {
+        var g = new Graph(new StringReader("\"a\\\"\"b\",c\\d\r\n"),
+                          x -> {});
+        var w = new StringWriter();
+        GraphIO.WriteDOT(g, w);
+
+        assertEquals("graph {\n" +
+                     "\t\"a\\\\\"b\";\n" +
+                     "\t\"a\\\\\"b\" -- \"c\\d\";\n" +
+                     "\t\"c\\d\";\n" +
+                     "}\n", w.toString());
+    }
+}
@@ -0,0 +1,96 @@
+package Lab4.graph;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static Lab4.graph.TestGraphs.loadAirports;
+import static org.junit.Assert.*;
+
+public class GraphMetricsTest {
+    /* path A - B - C - D - E with a branch F off C, and a separate pair */
+    private static final String SMALL_GRAPH =
+            "A,B\r\nB,C\r\nC,D,F\r\nD,E\r\nX,Y\r\n";
+
+    /**
+     * Compute the eccentricity of every node of the largest component
+     * using one search per node.
+     */
+    static int[] bruteForceExtremes(Graph g, String member) {
+        var compact = new CompactGraph(g);
+        var dist = new int[compact.names.length];
+        var queue = new int[compact.names.length];
+        var reachable = new boolean[compact.names.length];
+        eccentricity(compact, compact.indexOf(member), dist, queue);
+        for (var n = 0; n < dist.length; ++n)
+            reachable[n] = dist[n] >= 0;
+
+        var diameter = 0;
+        var radius = Integer.MAX_VALUE;
+        for (var n = 0; n < dist.length; ++n) {
+            if (!reachable[n])
+                continue;
+
+            var ecc = eccentricity(compact, n, dist, queue);
+            diameter = Math.max(diameter, ecc);
+            radius = Math.min(radius, ecc);
+        }
+
+        return new int[] { diameter, radius };
+    }
+
+    static int eccentricity(CompactGraph g, int s, int[] dist, int[] queue) {
+        Arrays.fill(dist, -1);
+        var head = 0;
+        var tail = 0;
+        queue[tail++] = s;
+        dist[s] = 0;
+        while (head < tail) {
+            var n = queue[head++];
+            for (var i = g.offsets[n]; i < g.offsets[n + 1]; ++i) {
+                if (dist[g.adjacency[i]] >= 0)
+                    continue;
+
+                dist[g.adjacency[i]] = dist[n] + 1;
+                queue[tail++] = g.adjacency[i];
+            }
+        }
+
+        return dist[queue[tail - 1]];
+    }
+
+    @Test
+    public void smallGraphMetrics() throws IOException {
+        var metrics = new GraphMetrics(
+                new Graph(new StringReader(SMALL_GRAPH), x -> {}));
+
+        assertEquals(6, metrics.getComponentSize());
+        assertEquals(4, metrics.getDiameter());
+        assertEquals(2, metrics.getRadius());
+        assertEquals(4, metrics.getEccentricity("A"));
+        assertEquals(2, metrics.getEccentricity("C"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nodeOutsideLargestComponentIsRejected() throws IOException {
+        new GraphMetrics(new Graph(new StringReader(SMALL_GRAPH), x -> {}))
+                .getEccentricity("X");
+    }
+
+    @Test
+    public void airportMetricsMatchBruteForce() throws IOException {
+        var g = loadAirports();
+        var expected = bruteForceExtremes(g, "AER");
+
+        var sequential = new GraphMetrics(g, Integer.MAX_VALUE);
+        assertEquals(expected[0], sequential.getDiameter());
+        assertEquals(expected[1], sequential.getRadius());
+
+        /* every fringe is searched in parallel */
+        var parallel = new GraphMetrics(g, 1);
+        assertEquals(expected[0], parallel.getDiameter());
+        assertEquals(expected[1], parallel.getRadius());
+    }
+}
@@ -0,0 +1,175 @@
+package Lab4.graph;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import static Lab4.graph.TestGraphs.loadAirports;
+import static Lab4.graph.TestGraphs.neighborNames;
+import static org.junit.Assert.*;
+
+public class GraphTest {
+    private static final String SMALL_GRAPH =
+            "C,B,A,D\r\nD,E,A\r\nE,B\r\n";
+    private static final String[][] PAIRS = {
+            { "AER", "YYZ" }, { "PKN", "LAX" }, { "GKA", "ZYL" },
+    };
+
+    /**
+     * Breadth first search visiting neighbors in stored order, as the
+     * graph's search did before the randomized variant was added.
+     */
+    static Map<String, String> referenceSearch(Graph g, String s, String t) {
+        var pred = new HashMap<String, String>();
+        var queue = new ArrayDeque<String>();
+        queue.add(s);
+        pred.put(s, s);
+        while (!queue.isEmpty()) {
+            var n = queue.removeFirst();
+            for (var neigh : neighborNames(g, n)) {
+                if (pred.containsKey(neigh))
+                    continue;
+
+                queue.add(neigh);
+                pred.put(neigh, n);
+                if (neigh.equals(t))
+                    return pred;
+            }
+        }
+
+        return pred;
+    }
+
+    static Map<String, String> search(Graph g, String s, String t,
+                                      Random rnd) {
+        var pred = new HashMap<String, String>();
+        g.breadthFirstSearch(s, t, pred, new ArrayDeque<Node<String>>(), rnd);
+        return pred;
+    }
+
+    static List<String> checkedPath(Graph g, String s, String t,
+                                    Map<String, String> pred) {
+        var path = Helpers.BFSPathExtract(s, t, pred);
+        assertEquals(s, path.get(0));
+        assertEquals(t, path.get(path.size() - 1));
+        for (var i = 1; i < path.size(); ++i)
+            assertTrue(g.getNode(path.get(i - 1)).isNeighbor(
+                    g.getNode(path.get(i))));
+
+        return path;
+    }
+
+    @Test
+    public void removeKeepsAdjacencyOrder() throws IOException {
+        var g = new Graph(new StringReader(SMALL_GRAPH), x -> {});
+        var removed = g.remove("A");
+
+        assertEquals(Arrays.asList("B", "C", "D", "E"),
+                     Arrays.asList(removed.getNames().toArray()));
+        assertEquals(Arrays.asList("B", "D"), neighborNames(removed, "C"));
+        assertEquals(Arrays.asList("C", "E"), neighborNames(removed, "D"));
+        assertEquals(Arrays.asList("D", "B"), neighborNames(removed, "E"));
+        assertEquals(Arrays.asList("C", "E"), neighborNames(removed, "B"));
+        assertEquals(4, removed.getEdgeCount());
+    }
+
+    @Test
+    public void removeLeavesOriginalUnchanged() throws IOException {
+        var g = new Graph(new StringReader(SMALL_GRAPH), x -> {});
+        g.remove("A", "B");
+
+        assertEquals(5, g.getNodeCount());
+        assertEquals(Arrays.asList("B", "A", "D"), neighborNames(g, "C"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void removeUnknownNodeFails() throws IOException {
+        new Graph(new StringReader(SMALL_GRAPH), x -> {}).remove("Z");
+    }
+
+    @Test
+    public void randomizedSearchFindsShortestPaths() throws IOException {
+        var g = loadAirports();
+        var rnd = new Random(1);
+
+        for (var pair : PAIRS) {
+            var expected = checkedPath(g, pair[0], pair[1],
+                    referenceSearch(g, pair[0], pair[1])).size();
+            var preds = new ArrayList<Map<String, String>>();
+            for (var i = 0; i < 20; ++i) {
+                var pred = search(g, pair[0], pair[1], rnd);
+                assertEquals(pair[0] + " -> " + pair[1], expected,
+                             checkedPath(g, pair[0], pair[1], pred).size());
+                preds.add(pred);
+            }
+            assertTrue(preds.stream().distinct().count() > 1);
+        }
+    }
+
+    @Test
+    public void randomizedSearchLeavesAdjacencyListsUnchanged()
+            throws IOException {
+        var g = loadAirports();
+        var before = new HashMap<String, List<String>>();
+        for (var name : g.getNames())
+            before.put(name, neighborNames(g, name));
+
+        var rnd = new Random(2);
+        for (var pair : PAIRS)
+            search(g, pair[0], pair[1], rnd);
+
+        for (var name : g.getNames())
+            assertEquals(name, before.get(name), neighborNames(g, name));
+    }
+
+    @Test
+    public void searchWithoutRandomSourceUsesStoredOrder()
+            throws IOException {
+        var g = loadAirports();
+
+        for (var pair : PAIRS) {
+            var expected = referenceSearch(g, pair[0], pair[1]);
+            assertEquals(expected, search(g, pair[0], pair[1], null));
+
+            var pred = new HashMap<String, String>();
+            g.breadthFirstSearch(pair[0], pair[1], pred,
+                                 new ArrayDeque<Node<String>>());
+            assertEquals(expected, pred);
+        }
+    }
+
+    @Test
+    public void concurrentSearchesAgree()
+            throws IOException, InterruptedException, ExecutionException {
+        var g = loadAirports();
+        var tasks = new ArrayList<Callable<Map<String, String>>>();
+        for (var i = 0; i < 32; ++i) {
+            var pair = PAIRS[i % PAIRS.length];
+            var seed = i;
+            tasks.add(() -> search(g, pair[0], pair[1], new Random(seed)));
+        }
+
+        var pool = Executors.newFixedThreadPool(4);
+        try {
+            var results = pool.invokeAll(tasks);
+            for (var i = 0; i < results.size(); ++i) {
+                var pair = PAIRS[i % PAIRS.length];
+                assertEquals(search(g, pair[0], pair[1], new Random(i)),
+                             results.get(i).get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
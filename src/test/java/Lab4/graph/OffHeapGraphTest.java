@@ -0,0 +1,98 @@
+package Lab4.graph;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static Lab4.graph.TestGraphs.AIRPORTS;
+import static Lab4.graph.TestGraphs.loadAirports;
+import static org.junit.Assert.*;
+
+public class OffHeapGraphTest {
+    /* repeated edges in both directions, and a self-edge */
+    private static final String SMALL_GRAPH =
+            "A,B,C,B\r\nB,A,D\r\nC,C,A\r\nD,B\r\nE\r\n";
+
+    static void assertSameGraph(Graph expected, OffHeapGraph actual) {
+        assertEquals(expected.getNodeCount(), actual.getNodeCount());
+        assertEquals(expected.getEdgeCount(), actual.getEdgeCount());
+
+        var n = 0;
+        for (var entry : expected.getNodes()) {
+            assertEquals(entry.getKey(), actual.getName(n));
+            var neighbors = entry.getValue().getNeighbors();
+            assertEquals(entry.getKey(), neighbors.size(),
+                         actual.getNeighborCount(n));
+            for (var i = 0; i < neighbors.size(); ++i)
+                assertEquals(neighbors.get(i).getName(),
+                             actual.getName(actual.getNeighbor(n, i)));
+            ++n;
+        }
+    }
+
+    @Test
+    public void copyMatchesGraph() throws IOException {
+        var g = loadAirports();
+        try (var offHeap = new OffHeapGraph(g)) {
+            assertSameGraph(g, offHeap);
+        }
+    }
+
+    @Test
+    public void loadingFromFileMatchesGraphInFileOrder() throws IOException {
+        var file = Files.createTempFile("graph", ".csv");
+        try {
+            Files.write(file, SMALL_GRAPH.getBytes(StandardCharsets.UTF_8));
+            try (var offHeap = new OffHeapGraph(file)) {
+                assertSameGraph(new Graph(new StringReader(SMALL_GRAPH),
+                                          x -> {}), offHeap);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void loadingAirportsFromFileMatchesGraph() throws IOException {
+        try (var offHeap = new OffHeapGraph(AIRPORTS)) {
+            assertSameGraph(loadAirports(), offHeap);
+        }
+    }
+
+    @Test
+    public void searchMatchesGraph() throws IOException {
+        var g = loadAirports();
+        try (var offHeap = new OffHeapGraph(g)) {
+            var pred = new int[offHeap.getNodeCount()];
+            Arrays.fill(pred, -1);
+            var source = offHeap.indexOf("AER");
+            var target = offHeap.indexOf("YYZ");
+            offHeap.breadthFirstSearch(source, target, pred,
+                                       new int[offHeap.getNodeCount()]);
+
+            var expected = new HashMap<String, String>();
+            g.breadthFirstSearch("AER", "YYZ", expected,
+                                 new ArrayDeque<>());
+            assertEquals(Helpers.BFSPathExtract("AER", "YYZ", expected),
+                         Helpers.BFSPathExtract(offHeap, source, target,
+                                                pred));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void searchAfterCloseFails() throws IOException {
+        var offHeap = new OffHeapGraph(loadAirports());
+        offHeap.close();
+        offHeap.close();
+
+        var pred = new int[offHeap.getNodeCount()];
+        Arrays.fill(pred, -1);
+        offHeap.breadthFirstSearch(0, 1, pred, new int[pred.length]);
+    }
+}
@@ -0,0 +1,49 @@
+package Lab4.graph;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Graphs and helpers shared by the tests.
+ */
+public final class TestGraphs {
+    /**
+     * Path to the airport connection graph shipped with the project.
+     */
+    public static final Path AIRPORTS =
+            Paths.get("data", "connected_airports.csv");
+
+    private TestGraphs() {
+    }
+
+    /**
+     * Load the airport connection graph.
+     *
+     * @return graph loaded.
+     * @throws IOException on I/O error.
+     */
+    public static Graph loadAirports() throws IOException {
+        try (var r = Files.newBufferedReader(AIRPORTS,
+                                             StandardCharsets.UTF_8)) {
+            return new Graph(r, x -> {});
+        }
+    }
+
+    /**
+     * Obtain the names of the neighbors of a node, in adjacency list order.
+     *
+     * @param g graph containing the node.
+     * @param name name of the node.
+     * @return names of the neighbors.
+     */
+    public static List<String> neighborNames(Graph g, String name) {
+        return g.getNode(name).getNeighbors().stream()
+                .map(Node::getName)
+                .collect(Collectors.toList());
+    }
+}
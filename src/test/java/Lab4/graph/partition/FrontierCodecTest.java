@@ -0,0 +1,93 @@
+package Lab4.graph.partition;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class FrontierCodecTest {
+    static int[][] roundTrip(byte[] batch) throws IOException {
+        var in = new DataInputStream(new ByteArrayInputStream(batch));
+        var pairs = FrontierCodec.Decode(in);
+        assertEquals("trailing bytes after batch.", -1, in.read());
+
+        return pairs;
+    }
+
+    /**
+     * Obtain the encoding mode of a batch whose count and first node fit in
+     * a single byte each.
+     */
+    static int mode(byte[] batch) {
+        return batch[2];
+    }
+
+    @Test
+    public void emptyBatchRoundTrips() throws IOException {
+        var pairs = roundTrip(FrontierCodec.Encode(new int[0], new int[0], 0));
+
+        assertEquals(0, pairs[0].length);
+        assertEquals(0, pairs[1].length);
+    }
+
+    @Test
+    public void sparseBatchRoundTripsAsDelta() throws IOException {
+        var nodes = new int[] { 100000, 5, 70, 2000000 };
+        var preds = new int[] { 3, 900000, 0, 12 };
+        var batch = FrontierCodec.Encode(nodes, preds, nodes.length);
+        var pairs = roundTrip(batch);
+
+        assertEquals(0, mode(batch));
+        assertArrayEquals(new int[] { 5, 70, 100000, 2000000 }, pairs[0]);
+        assertArrayEquals(new int[] { 900000, 0, 3, 12 }, pairs[1]);
+    }
+
+    @Test
+    public void denseBatchRoundTripsAsBitmap() throws IOException {
+        var nodes = new int[40];
+        var preds = new int[40];
+        for (var i = 0; i < nodes.length; ++i) {
+            /* 51 to 99 except multiples of 5, in descending order */
+            nodes[i] = 100 - (i + i / 4 + 1);
+            preds[i] = 7 * i;
+        }
+        var batch = FrontierCodec.Encode(nodes, preds, nodes.length);
+        var pairs = roundTrip(batch);
+
+        assertEquals(1, mode(batch));
+        assertEquals(nodes.length, pairs[0].length);
+        for (var i = 0; i < nodes.length; ++i) {
+            var j = nodes.length - 1 - i;
+            assertEquals(nodes[i], pairs[0][j]);
+            assertEquals(preds[i], pairs[1][j]);
+        }
+    }
+
+    @Test
+    public void duplicateNodesKeepSmallestPredecessor() throws IOException {
+        var nodes = new int[] { 9, 4, 9, 4, 9, 1 };
+        var preds = new int[] { 30, 8, 10, 2, 20, 5 };
+        var pairs = roundTrip(FrontierCodec.Encode(nodes, preds, 5));
+
+        assertArrayEquals(new int[] { 4, 9 }, pairs[0]);
+        assertArrayEquals(new int[] { 2, 10 }, pairs[1]);
+    }
+
+    @Test
+    public void varIntsRoundTrip() throws IOException {
+        var values = new int[] { 0, 1, 127, 128, 16383, 16384,
+                                 Integer.MAX_VALUE, -1 };
+        var out = new ByteArrayOutputStream();
+        for (var v : values)
+            FrontierCodec.WriteVarInt(out, v);
+
+        var in = new DataInputStream(
+                new ByteArrayInputStream(out.toByteArray()));
+        for (var v : values)
+            assertEquals(v, FrontierCodec.ReadVarInt(in));
+    }
+}
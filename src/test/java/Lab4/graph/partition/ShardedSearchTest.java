@@ -0,0 +1,102 @@
+package Lab4.graph.partition;
+
+import Lab4.graph.Graph;
+import Lab4.graph.Helpers;
+import Lab4.graph.Node;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static Lab4.graph.TestGraphs.AIRPORTS;
+import static Lab4.graph.TestGraphs.loadAirports;
+import static org.junit.Assert.*;
+
+public class ShardedSearchTest {
+    private static final String[][] PAIRS = {
+            { "AER", "YYZ" }, { "PKN", "LAX" }, { "SVO", "SVO" },
+            { "GKA", "ZYL" },
+    };
+
+    static void checkPartition(Graph g, GraphPartition p) {
+        assertEquals(g.getNodeCount(), p.getNodeCount());
+
+        var total = 0;
+        for (var k = 0; k < p.getShardCount(); ++k)
+            total += p.getShardSize(k);
+        assertEquals(g.getNodeCount(), total);
+
+        for (var name : g.getNames()) {
+            var n = p.indexOf(name);
+            assertEquals(name, p.getName(n));
+            assertEquals(n % p.getShardCount(), p.getOwner(n));
+        }
+        assertTrue(p.indexOf("no such airport") < 0);
+    }
+
+    static void checkSearches(Graph g, GraphPartition p) throws IOException {
+        var nodes = new HashMap<String, Node<String>>();
+        g.getNodes().forEach(e -> nodes.put(e.getKey(), e.getValue()));
+
+        try (var search = new ShardedSearch(p)) {
+            for (var pair : PAIRS) {
+                var path = search.breadthFirstSearch(pair[0], pair[1]);
+
+                var pred = new HashMap<String, String>();
+                g.breadthFirstSearch(pair[0], pair[1], pred,
+                                     new ArrayDeque<Node<String>>());
+                var expected = pair[0].equals(pair[1])
+                        ? Collections.singletonList(pair[0])
+                        : Helpers.BFSPathExtract(pair[0], pair[1], pred);
+
+                assertEquals(pair[0] + " -> " + pair[1], expected.size(),
+                             path.size());
+                assertEquals(pair[0], path.get(0));
+                assertEquals(pair[1], path.get(path.size() - 1));
+                for (var i = 1; i < path.size(); ++i)
+                    assertTrue(nodes.get(path.get(i - 1)).isNeighbor(
+                            nodes.get(path.get(i))));
+            }
+        }
+    }
+
+    @Test
+    public void hashPartitionOfTwoShardsMatchesGraphSearch()
+            throws IOException {
+        var g = loadAirports();
+        var p = GraphPartition.Hash(AIRPORTS, 2);
+
+        checkPartition(g, p);
+        checkSearches(g, p);
+    }
+
+    @Test
+    public void greedyPartitionOfThreeShardsMatchesGraphSearch()
+            throws IOException {
+        var g = loadAirports();
+        var p = GraphPartition.LinearDeterministicGreedy(AIRPORTS, 3);
+
+        checkPartition(g, p);
+        for (var k = 0; k < 3; ++k)
+            assertTrue(p.getShardSize(k) <= (g.getNodeCount() + 2) / 3);
+        checkSearches(g, p);
+    }
+
+    @Test
+    public void greedyPartitionCutsFewerEdgesThanHashing()
+            throws IOException {
+        try (var hash = new ShardedSearch(GraphPartition.Hash(AIRPORTS, 3));
+             var greedy = new ShardedSearch(
+                     GraphPartition.LinearDeterministicGreedy(AIRPORTS, 3))) {
+            assertTrue(greedy.getEdgeCut() > 0);
+            assertTrue(greedy.getEdgeCut() < hash.getEdgeCut());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveShardCountIsRejected() throws IOException {
+        GraphPartition.Hash(AIRPORTS, 0);
+    }
+}